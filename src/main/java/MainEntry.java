@@ -1,5 +1,6 @@
 import core.server.NSServer;
 import mbean.PsychicAbout;
+import mbean.PsychicCommand;
 import mbean.PsychicMetric;
 import mbean.PsychicNotification;
 import org.slf4j.Logger;
@@ -15,7 +16,7 @@ import java.nio.file.Paths;
  * Program entry point.
  *
  * @author Thibault Meyer
- * @version 1.3.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public class MainEntry {
@@ -80,6 +81,7 @@ public class MainEntry {
         jmxServer.registerMBean(new PsychicAbout(), new ObjectName("PsychicSoul:type=About"));
         jmxServer.registerMBean(new PsychicMetric(nsSrv), new ObjectName("PsychicSoul:type=Metric"));
         jmxServer.registerMBean(PsychicNotification.getInstance(), new ObjectName("PsychicSoul:type=Notification"));
+        jmxServer.registerMBean(new PsychicCommand(), new ObjectName("PsychicSoul:type=Command"));
         System.exit(nsSrv.run());
     }
 }
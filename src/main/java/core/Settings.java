@@ -12,7 +12,7 @@ import java.util.Properties;
  * Settings of the Netsoul dedicated server.
  *
  * @author Thibault Meyer
- * @version 1.2.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public final class Settings {
@@ -45,6 +45,97 @@ public final class Settings {
      */
     public static Integer socketMaxConn;
 
+    /**
+     * The number of worker selectors handling the connected sockets.
+     *
+     * @since 1.4.0
+     */
+    public static Integer socketWorkers;
+
+    /**
+     * The maximal number of bytes written to a socket per writable event.
+     *
+     * @since 1.4.0
+     */
+    public static Integer socketWriteBudget;
+
+    /**
+     * The maximal length of a line sent by a client.
+     *
+     * @since 1.4.0
+     */
+    public static Integer socketMaxLineLength;
+
+    /**
+     * The maximal number of commands executed per session on each loop.
+     *
+     * @since 1.4.0
+     */
+    public static Integer socketCommandBudget;
+
+    /**
+     * The maximal number of followers notified per loop.
+     *
+     * @since 1.4.0
+     */
+    public static Integer socketFanoutSlice;
+
+    /**
+     * The size in bytes of the output buffer under which a slow consumer
+     * receive its notifications again.
+     *
+     * @since 1.4.0
+     */
+    public static Integer socketOutputLowWatermark;
+
+    /**
+     * The size in bytes of the output buffer from which the notifications
+     * sent to a session are coalesced or dropped.
+     *
+     * @since 1.4.0
+     */
+    public static Integer socketOutputHighWatermark;
+
+    /**
+     * The size in bytes of the output buffer from which the session is
+     * disconnected.
+     *
+     * @since 1.4.0
+     */
+    public static Integer socketOutputMaxSize;
+
+    /**
+     * The number of bytes queued in the output buffers of all sessions
+     * from which the server start shedding.
+     *
+     * @since 1.4.0
+     */
+    public static Long socketOutputBudget;
+
+    /**
+     * The number of bytes queued in the output buffers of all sessions
+     * under which the server stop shedding.
+     *
+     * @since 1.4.0
+     */
+    public static Long socketOutputBudgetResume;
+
+    /**
+     * The maximal number of tokens a session can save to execute a burst
+     * of commands.
+     *
+     * @since 1.4.0
+     */
+    public static Double socketRateBurst;
+
+    /**
+     * The number of tokens given to each session per second. The rate
+     * limit is disabled if this value is not positive.
+     *
+     * @since 1.4.0
+     */
+    public static Double socketRateRefill;
+
     /**
      * The driver to use with the database.
      *
@@ -80,6 +171,20 @@ public final class Settings {
      */
     public static Boolean databaseBuiltIntFunction;
 
+    /**
+     * The time in seconds between two refreshes of the account directory.
+     *
+     * @since 1.4.0
+     */
+    public static Integer databaseAccountRefresh;
+
+    /**
+     * The time in seconds between two full reloads of the account directory.
+     *
+     * @since 1.4.0
+     */
+    public static Integer databaseAccountFullRefresh;
+
     /**
      * Maximal number of simultaneous session allowed with the same login.
      *
@@ -87,6 +192,20 @@ public final class Settings {
      */
     public static Integer cfgMaxSessionPerLogin;
 
+    /**
+     * Number of threads used to authenticate users.
+     *
+     * @since 1.4.0
+     */
+    public static Integer authWorkers;
+
+    /**
+     * Maximal number of authentication requests waiting for a thread.
+     *
+     * @since 1.4.0
+     */
+    public static Integer authQueueSize;
+
     /**
      * Kerberos 5 Debug mode
      *
@@ -129,6 +248,14 @@ public final class Settings {
      */
     public static String krb5JaasFile;
 
+    /**
+     * Kerberos 5 credential is renewed this number of seconds before it
+     * expires.
+     *
+     * @since 1.4.0
+     */
+    public static Integer krb5RenewMargin;
+
     /**
      * Static constructor.
      *
@@ -149,6 +276,18 @@ public final class Settings {
             Settings.socketPort = Integer.valueOf(properties.getProperty("server.socket.port"));
             Settings.socketTTL = Integer.valueOf(properties.getProperty("server.socket.ttl"));
             Settings.socketMaxConn = Integer.valueOf(properties.getProperty("server.socket.maxconn"));
+            Settings.socketWorkers = Integer.valueOf(properties.getProperty("server.socket.workers", "1"));
+            Settings.socketWriteBudget = Integer.valueOf(properties.getProperty("server.socket.write_budget", "65536"));
+            Settings.socketMaxLineLength = Integer.valueOf(properties.getProperty("server.socket.max_line_length", "8192"));
+            Settings.socketCommandBudget = Integer.valueOf(properties.getProperty("server.socket.command_budget", "16"));
+            Settings.socketFanoutSlice = Integer.valueOf(properties.getProperty("server.socket.fanout_slice", "256"));
+            Settings.socketOutputLowWatermark = Integer.valueOf(properties.getProperty("server.socket.output_low_watermark", "262144"));
+            Settings.socketOutputHighWatermark = Integer.valueOf(properties.getProperty("server.socket.output_high_watermark", "1048576"));
+            Settings.socketOutputMaxSize = Integer.valueOf(properties.getProperty("server.socket.output_max_size", "4194304"));
+            Settings.socketOutputBudget = Long.valueOf(properties.getProperty("server.socket.output_budget", "268435456"));
+            Settings.socketOutputBudgetResume = Long.valueOf(properties.getProperty("server.socket.output_budget_resume", "201326592"));
+            Settings.socketRateBurst = Double.valueOf(properties.getProperty("server.socket.rate_burst", "64"));
+            Settings.socketRateRefill = Double.valueOf(properties.getProperty("server.socket.rate_refill", "32"));
             Settings.databaseDriver = properties.getProperty("server.database.driver");
             Settings.databaseUrl = properties.getProperty("server.database.url");
             if (Settings.databaseUrl.contains("~")) {
@@ -157,13 +296,18 @@ public final class Settings {
             Settings.databaseUsername = properties.getProperty("server.database.username", null);
             Settings.databasePassword = properties.getProperty("server.database.password", null);
             Settings.databaseBuiltIntFunction = Boolean.valueOf(properties.getProperty("server.database.usebuiltin", "false"));
+            Settings.databaseAccountRefresh = Integer.valueOf(properties.getProperty("server.database.account_refresh", "60"));
+            Settings.databaseAccountFullRefresh = Integer.valueOf(properties.getProperty("server.database.account_full_refresh", "900"));
             Settings.cfgMaxSessionPerLogin = Integer.valueOf(properties.getProperty("server.config.max_sess_per_login"));
+            Settings.authWorkers = Integer.valueOf(properties.getProperty("server.auth.workers", "4"));
+            Settings.authQueueSize = Integer.valueOf(properties.getProperty("server.auth.queue_size", "256"));
             Settings.krb5Debug = Boolean.valueOf(properties.getProperty("server.auth.krb5.debug", "false"));
             Settings.krb5Oid = properties.getProperty("server.auth.krb5.oid", null);
             Settings.krb5Realm = properties.getProperty("server.auth.krb5.realm", null);
             Settings.krb5Kdc = properties.getProperty("server.auth.krb5.kdc", null);
             Settings.krb5Password = properties.getProperty("server.auth.krb5.password", null);
             Settings.krb5JaasFile = properties.getProperty("server.auth.krb5.jaasfile", null);
+            Settings.krb5RenewMargin = Integer.valueOf(properties.getProperty("server.auth.krb5.renew_margin", "300"));
         } catch (NumberFormatException e) {
             LOG.error("Can't parse settings file", e);
         } catch (Throwable e) {
@@ -0,0 +1,181 @@
+package core.network;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of fixed size direct {@code ByteBuffer}. Buffers are sliced from
+ * large slabs allocated on demand, up to a maximum number of slabs. When
+ * the pool is exhausted, a temporary heap buffer is returned and will not
+ * be recycled. This class is thread safe.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class BufferPool {
+
+    /**
+     * Size of each buffer.
+     *
+     * @since 1.4.0
+     */
+    private final int bufferSize;
+
+    /**
+     * Number of buffers sliced from each slab.
+     *
+     * @since 1.4.0
+     */
+    private final int buffersPerSlab;
+
+    /**
+     * Maximum number of slabs to allocate.
+     *
+     * @since 1.4.0
+     */
+    private final int maxSlabs;
+
+    /**
+     * Buffers ready to be used.
+     *
+     * @since 1.4.0
+     */
+    private final Queue<ByteBuffer> freeBuffers;
+
+    /**
+     * Number of allocated slabs.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicInteger slabCount;
+
+    /**
+     * Number of requests served with a recycled buffer.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicLong hitCount;
+
+    /**
+     * Number of requests that required an allocation.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicLong missCount;
+
+    /**
+     * Build a new pool. The first slab is allocated immediately.
+     *
+     * @param bufferSize     The size of each buffer in bytes
+     * @param buffersPerSlab The number of buffers per slab
+     * @param maxSlabs       The maximum number of slabs
+     * @since 1.4.0
+     */
+    public BufferPool(final int bufferSize, final int buffersPerSlab, final int maxSlabs) {
+        this.bufferSize = bufferSize;
+        this.buffersPerSlab = buffersPerSlab;
+        this.maxSlabs = maxSlabs;
+        this.freeBuffers = new ConcurrentLinkedQueue<>();
+        this.slabCount = new AtomicInteger(0);
+        this.hitCount = new AtomicLong(0);
+        this.missCount = new AtomicLong(0);
+        this.__allocateSlab();
+    }
+
+    /**
+     * Allocate a new slab and add its buffers to the free list.
+     *
+     * @return {@code true} if a slab was allocated, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    private boolean __allocateSlab() {
+        if (this.slabCount.incrementAndGet() > this.maxSlabs) {
+            this.slabCount.decrementAndGet();
+            return false;
+        }
+        final ByteBuffer slab = ByteBuffer.allocateDirect(this.bufferSize * this.buffersPerSlab);
+        for (int i = 0; i < this.buffersPerSlab; ++i) {
+            slab.limit((i + 1) * this.bufferSize);
+            slab.position(i * this.bufferSize);
+            this.freeBuffers.add(slab.slice());
+        }
+        return true;
+    }
+
+    /**
+     * Get a cleared buffer from the pool. The buffer must be given back
+     * with {@code release} once used.
+     *
+     * @return A buffer of {@code getBufferSize()} bytes
+     * @since 1.4.0
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = this.freeBuffers.poll();
+        if (buffer != null) {
+            this.hitCount.incrementAndGet();
+            return buffer;
+        }
+        this.missCount.incrementAndGet();
+        if (this.__allocateSlab()) {
+            buffer = this.freeBuffers.poll();
+        }
+        return (buffer != null) ? buffer : ByteBuffer.allocate(this.bufferSize);
+    }
+
+    /**
+     * Give back a buffer to the pool.
+     *
+     * @param buffer The buffer obtained with {@code acquire}
+     * @since 1.4.0
+     */
+    public void release(final ByteBuffer buffer) {
+        if (buffer.isDirect()) {
+            buffer.clear();
+            this.freeBuffers.add(buffer);
+        }
+    }
+
+    /**
+     * Get the size of each buffer.
+     *
+     * @return The size in bytes
+     * @since 1.4.0
+     */
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    /**
+     * Get the number of requests served with a recycled buffer.
+     *
+     * @return The number of hits
+     * @since 1.4.0
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Get the number of requests that required an allocation.
+     *
+     * @return The number of misses
+     * @since 1.4.0
+     */
+    public long getMissCount() {
+        return this.missCount.get();
+    }
+
+    /**
+     * Get the total direct memory allocated by this pool.
+     *
+     * @return The allocated memory in bytes
+     * @since 1.4.0
+     */
+    public long getAllocatedBytes() {
+        return (long) this.slabCount.get() * this.buffersPerSlab * this.bufferSize;
+    }
+}
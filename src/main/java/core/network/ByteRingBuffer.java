@@ -0,0 +1,403 @@
+package core.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+/**
+ * Growable circular byte buffer. Data is encoded once when appended and
+ * drained directly to a channel; partially written data simply stays in
+ * the buffer. A {@code SharedBuffer} is appended by reference, without
+ * copy, and written in order with the other data. This class is not
+ * thread safe.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class ByteRingBuffer {
+
+    /**
+     * Shared empty array used until the first write.
+     *
+     * @since 1.4.0
+     */
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * The initial capacity once the buffer is used.
+     *
+     * @since 1.4.0
+     */
+    private final int initialCapacity;
+
+    /**
+     * The backing array.
+     *
+     * @since 1.4.0
+     */
+    private byte[] buffer;
+
+    /**
+     * Two heap {@code ByteBuffer} wrapping the backing array, used to
+     * describe the (up to) two readable regions for gathering writes.
+     *
+     * @since 1.4.0
+     */
+    private final ByteBuffer[] views;
+
+    /**
+     * Index of the first readable byte.
+     *
+     * @since 1.4.0
+     */
+    private int head;
+
+    /**
+     * Number of readable bytes in the backing array.
+     *
+     * @since 1.4.0
+     */
+    private int size;
+
+    /**
+     * Total number of bytes appended to the backing array.
+     *
+     * @since 1.4.0
+     */
+    private long ringWritten;
+
+    /**
+     * Total number of bytes consumed from the backing array.
+     *
+     * @since 1.4.0
+     */
+    private long ringRead;
+
+    /**
+     * Shared buffers waiting to be written, created on first use.
+     *
+     * @since 1.4.0
+     */
+    private ArrayDeque<SharedSlice> sharedSlices;
+
+    /**
+     * Number of readable bytes in the shared buffers.
+     *
+     * @since 1.4.0
+     */
+    private int sharedSize;
+
+    /**
+     * Buffers handed to the gathering write.
+     *
+     * @since 1.4.0
+     */
+    private final ByteBuffer[] gather;
+
+    /**
+     * Build a new ring buffer. Memory is allocated on the first write.
+     *
+     * @param initialCapacity The initial capacity in bytes
+     * @since 1.4.0
+     */
+    public ByteRingBuffer(final int initialCapacity) {
+        this.initialCapacity = Math.max(16, initialCapacity);
+        this.views = new ByteBuffer[2];
+        this.gather = new ByteBuffer[3];
+        this.__setBuffer(ByteRingBuffer.EMPTY);
+        this.head = 0;
+        this.size = 0;
+        this.ringWritten = 0;
+        this.ringRead = 0;
+        this.sharedSize = 0;
+    }
+
+    /**
+     * Replace the backing array.
+     *
+     * @param newBuffer The new backing array
+     * @since 1.4.0
+     */
+    private void __setBuffer(final byte[] newBuffer) {
+        this.buffer = newBuffer;
+        this.views[0] = ByteBuffer.wrap(newBuffer);
+        this.views[1] = ByteBuffer.wrap(newBuffer);
+    }
+
+    /**
+     * Get the number of readable bytes.
+     *
+     * @return The number of bytes
+     * @since 1.4.0
+     */
+    public int size() {
+        return this.size + this.sharedSize;
+    }
+
+    /**
+     * Check if this buffer is empty.
+     *
+     * @return {@code true} if there is nothing to read, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean isEmpty() {
+        return this.size == 0 && this.sharedSize == 0;
+    }
+
+    /**
+     * Get the current capacity.
+     *
+     * @return The capacity in bytes
+     * @since 1.4.0
+     */
+    public int capacity() {
+        return this.buffer.length;
+    }
+
+    /**
+     * Make sure the buffer can hold {@code extra} more bytes.
+     *
+     * @param extra The number of bytes to add
+     * @since 1.4.0
+     */
+    private void __ensureCapacity(final int extra) {
+        final int required = this.size + extra;
+        if (required > this.buffer.length) {
+            int newCapacity = Math.max(this.buffer.length, this.initialCapacity);
+            while (newCapacity < required) {
+                newCapacity <<= 1;
+            }
+            final byte[] newBuffer = new byte[newCapacity];
+            final int firstPart = Math.min(this.size, this.buffer.length - this.head);
+            System.arraycopy(this.buffer, this.head, newBuffer, 0, firstPart);
+            System.arraycopy(this.buffer, 0, newBuffer, firstPart, this.size - firstPart);
+            this.__setBuffer(newBuffer);
+            this.head = 0;
+        }
+    }
+
+    /**
+     * Append a single byte. The capacity must have been checked before.
+     *
+     * @param b The byte to append
+     * @since 1.4.0
+     */
+    private void __put(final byte b) {
+        int tail = this.head + this.size;
+        if (tail >= this.buffer.length) {
+            tail -= this.buffer.length;
+        }
+        this.buffer[tail] = b;
+        this.size += 1;
+        this.ringWritten += 1;
+    }
+
+    /**
+     * Append bytes to the buffer.
+     *
+     * @param src    The source array
+     * @param offset The offset in the source array
+     * @param length The number of bytes to append
+     * @since 1.4.0
+     */
+    public void write(final byte[] src, final int offset, final int length) {
+        this.__ensureCapacity(length);
+        int tail = this.head + this.size;
+        if (tail >= this.buffer.length) {
+            tail -= this.buffer.length;
+        }
+        final int firstPart = Math.min(length, this.buffer.length - tail);
+        System.arraycopy(src, offset, this.buffer, tail, firstPart);
+        System.arraycopy(src, offset + firstPart, this.buffer, 0, length - firstPart);
+        this.size += length;
+        this.ringWritten += length;
+    }
+
+    /**
+     * Append bytes to the buffer.
+     *
+     * @param src The bytes to append
+     * @since 1.4.0
+     */
+    public void write(final byte[] src) {
+        this.write(src, 0, src.length);
+    }
+
+    /**
+     * Append a string encoded in UTF-8. Pure ASCII strings are copied
+     * without any intermediate allocation.
+     *
+     * @param data The string to append
+     * @since 1.4.0
+     */
+    public void write(final String data) {
+        final int length = data.length();
+        this.__ensureCapacity(length);
+        for (int i = 0; i < length; ++i) {
+            final char c = data.charAt(i);
+            if (c >= 0x80) {
+                this.write(data.substring(i).getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            this.__put((byte) c);
+        }
+    }
+
+    /**
+     * Append a shared buffer by reference. The buffer is retained until
+     * it has been written or this ring buffer is cleared.
+     *
+     * @param shared The shared buffer to append
+     * @since 1.4.0
+     */
+    public void write(final SharedBuffer shared) {
+        if (this.sharedSlices == null) {
+            this.sharedSlices = new ArrayDeque<>();
+        }
+        this.sharedSlices.add(new SharedSlice(shared.retain(), this.ringWritten));
+        this.sharedSize += shared.length();
+    }
+
+    /**
+     * Drain as many bytes as the channel accepts, up to the given budget.
+     * When the readable data wraps around the end of the backing array, or
+     * is followed by a shared buffer, all regions are written at once with
+     * a gathering write.
+     *
+     * @param channel The channel to write to
+     * @param budget  The maximum number of bytes to write
+     * @return The number of bytes written
+     * @throws IOException If the write operation fail
+     * @since 1.4.0
+     */
+    public int writeTo(final GatheringByteChannel channel, final int budget) throws IOException {
+        int total = 0;
+        while (total < budget) {
+            final SharedSlice slice = (this.sharedSlices != null) ? this.sharedSlices.peek() : null;
+            final int ringBefore = (slice != null) ? (int) (slice.ringMark - this.ringRead) : this.size;
+            final int ringToWrite = Math.min(ringBefore, budget - total);
+            final int sharedToWrite = (slice != null && ringToWrite == ringBefore) ? Math.min(slice.view.capacity() - slice.view.position(), budget - total - ringToWrite) : 0;
+            if (ringToWrite + sharedToWrite == 0) {
+                break;
+            }
+            int count = 0;
+            if (ringToWrite > 0) {
+                final int firstPart = Math.min(ringToWrite, this.buffer.length - this.head);
+                this.views[0].limit(this.head + firstPart);
+                this.views[0].position(this.head);
+                this.gather[count++] = this.views[0];
+                if (firstPart < ringToWrite) {
+                    this.views[1].limit(ringToWrite - firstPart);
+                    this.views[1].position(0);
+                    this.gather[count++] = this.views[1];
+                }
+            }
+            if (sharedToWrite > 0) {
+                slice.view.limit(slice.view.position() + sharedToWrite);
+                this.gather[count++] = slice.view;
+            }
+            final int nbWritten = (int) channel.write(this.gather, 0, count);
+            final int ringWrittenNow = Math.min(nbWritten, ringToWrite);
+            if (ringWrittenNow > 0) {
+                this.__consume(ringWrittenNow);
+            }
+            this.sharedSize -= nbWritten - ringWrittenNow;
+            if (slice != null && slice.view.position() == slice.view.capacity()) {
+                this.sharedSlices.poll();
+                slice.shared.release();
+            }
+            total += nbWritten;
+            if (nbWritten < ringToWrite + sharedToWrite) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Drop bytes from the head of the buffer. Once empty, an oversized
+     * backing array is released.
+     *
+     * @param length The number of bytes to drop
+     * @since 1.4.0
+     */
+    private void __consume(final int length) {
+        this.size -= length;
+        this.ringRead += length;
+        this.head += length;
+        if (this.head >= this.buffer.length) {
+            this.head -= this.buffer.length;
+        }
+        if (this.size == 0) {
+            this.head = 0;
+            if (this.buffer.length > this.initialCapacity * 16) {
+                this.__setBuffer(ByteRingBuffer.EMPTY);
+            }
+        }
+    }
+
+    /**
+     * Drop all bytes and release the shared buffers.
+     *
+     * @since 1.4.0
+     */
+    public void clear() {
+        if (this.size > 0) {
+            this.__consume(this.size);
+        }
+        if (this.sharedSlices != null) {
+            SharedSlice slice;
+            while ((slice = this.sharedSlices.poll()) != null) {
+                slice.shared.release();
+            }
+        }
+        this.sharedSize = 0;
+    }
+
+    /**
+     * A shared buffer waiting in the output, with its own read position.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static final class SharedSlice {
+
+        /**
+         * The shared buffer.
+         *
+         * @since 1.4.0
+         */
+        final SharedBuffer shared;
+
+        /**
+         * View holding the read position.
+         *
+         * @since 1.4.0
+         */
+        final ByteBuffer view;
+
+        /**
+         * Number of bytes appended to the backing array before this buffer.
+         *
+         * @since 1.4.0
+         */
+        final long ringMark;
+
+        /**
+         * Build a new slice.
+         *
+         * @param shared   The shared buffer
+         * @param ringMark Number of bytes appended to the backing array before
+         * @since 1.4.0
+         */
+        SharedSlice(final SharedBuffer shared, final long ringMark) {
+            this.shared = shared;
+            this.view = shared.view();
+            this.ringMark = ringMark;
+        }
+    }
+}
@@ -4,7 +4,7 @@ package core.network;
  * Possible reasons for what a client socket has been closed and removed.
  *
  * @author Thibault Meyer
- * @version 1.0.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public enum DisconnectReason {
@@ -42,5 +42,19 @@ public enum DisconnectReason {
      *
      * @since 1.0.0
      */
-    TOO_MANY_CLIENTS
+    TOO_MANY_CLIENTS,
+
+    /**
+     * The client sent a line longer than the allowed maximal length.
+     *
+     * @since 1.4.0
+     */
+    LINE_TOO_LONG,
+
+    /**
+     * The client does not read its data fast enough.
+     *
+     * @since 1.4.0
+     */
+    SLOW_CONSUMER
 }
@@ -0,0 +1,268 @@
+package core.network;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timer wheel. Timeouts are hashed into a fixed number of buckets
+ * according to their deadline tick, so advancing the wheel only touches
+ * the buckets elapsed since the last call, and only fires the timeouts
+ * actually expired. This class is not thread safe and must be used by a
+ * single thread (ie: the owning {@code NIOWorker}).
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class HashedTimerWheel {
+
+    /**
+     * Logger.
+     *
+     * @since 1.4.0
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(HashedTimerWheel.class.getName());
+
+    /**
+     * Duration of a tick in milliseconds.
+     *
+     * @since 1.4.0
+     */
+    private final long tickDuration;
+
+    /**
+     * The buckets. Each bucket is the head of a doubly linked list.
+     *
+     * @since 1.4.0
+     */
+    private final Timeout[] wheel;
+
+    /**
+     * Mask used to hash a tick into a bucket.
+     *
+     * @since 1.4.0
+     */
+    private final int mask;
+
+    /**
+     * The time in milliseconds when the wheel was created.
+     *
+     * @since 1.4.0
+     */
+    private final long startTime;
+
+    /**
+     * The last processed tick.
+     *
+     * @since 1.4.0
+     */
+    private long currentTick;
+
+    /**
+     * The number of scheduled timeouts.
+     *
+     * @since 1.4.0
+     */
+    private int pendingTimeouts;
+
+    /**
+     * Build a new timer wheel.
+     *
+     * @param tickDuration The duration of a tick in milliseconds
+     * @param wheelSize    The number of buckets (rounded to the next power of two)
+     * @since 1.4.0
+     */
+    public HashedTimerWheel(final long tickDuration, final int wheelSize) {
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+        this.tickDuration = tickDuration;
+        this.wheel = new Timeout[size];
+        this.mask = size - 1;
+        this.startTime = System.currentTimeMillis();
+        this.currentTick = 0;
+        this.pendingTimeouts = 0;
+    }
+
+    /**
+     * Schedule a task to be run after the given delay.
+     *
+     * @param task  The task to run
+     * @param delay The delay in milliseconds
+     * @return The timeout handle, can be used to cancel the task
+     * @since 1.4.0
+     */
+    public Timeout schedule(final Runnable task, final long delay) {
+        final long deadline = System.currentTimeMillis() + Math.max(0, delay) - this.startTime;
+        long deadlineTick = (deadline + this.tickDuration - 1) / this.tickDuration;
+        if (deadlineTick <= this.currentTick) {
+            deadlineTick = this.currentTick + 1;
+        }
+        final Timeout timeout = new Timeout(this, task, deadlineTick);
+        this.__link(timeout);
+        return timeout;
+    }
+
+    /**
+     * Run all timeouts expired at the given time. A task throwing an
+     * exception is logged and does not prevent the others from running.
+     *
+     * @param now The current time in milliseconds
+     * @since 1.4.0
+     */
+    public void advance(final long now) {
+        final long targetTick = (now - this.startTime) / this.tickDuration;
+        if (targetTick <= this.currentTick) {
+            return;
+        }
+        final long nbTicks = Math.min(targetTick - this.currentTick, this.wheel.length);
+        final long firstTick = this.currentTick + 1;
+        this.currentTick = targetTick;
+        for (long tick = firstTick; tick < firstTick + nbTicks && this.pendingTimeouts > 0; ++tick) {
+            final int bucket = (int) (tick & this.mask);
+            Timeout timeout = this.wheel[bucket];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.deadlineTick <= targetTick) {
+                    this.__unlink(timeout);
+                    try {
+                        timeout.task.run();
+                    } catch (RuntimeException ex) {
+                        LOG.warn("Error during timer task execution", ex);
+                    }
+                    if (next != null && !next.scheduled) {
+                        // The task cancelled the next timeout, restart from the head
+                        next = this.wheel[bucket];
+                    }
+                }
+                timeout = next;
+            }
+        }
+    }
+
+    /**
+     * Get the number of scheduled timeouts.
+     *
+     * @return The number of scheduled timeouts
+     * @since 1.4.0
+     */
+    public int size() {
+        return this.pendingTimeouts;
+    }
+
+    /**
+     * Insert the timeout into its bucket.
+     *
+     * @param timeout The timeout to insert
+     * @since 1.4.0
+     */
+    private void __link(final Timeout timeout) {
+        final int bucket = (int) (timeout.deadlineTick & this.mask);
+        timeout.next = this.wheel[bucket];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        this.wheel[bucket] = timeout;
+        timeout.scheduled = true;
+        this.pendingTimeouts += 1;
+    }
+
+    /**
+     * Remove the timeout from its bucket.
+     *
+     * @param timeout The timeout to remove
+     * @since 1.4.0
+     */
+    private void __unlink(final Timeout timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            this.wheel[(int) (timeout.deadlineTick & this.mask)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.scheduled = false;
+        this.pendingTimeouts -= 1;
+    }
+
+    /**
+     * Handle to a scheduled task.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    public static final class Timeout {
+
+        /**
+         * The wheel owning this timeout.
+         *
+         * @since 1.4.0
+         */
+        private final HashedTimerWheel timerWheel;
+
+        /**
+         * The task to run on expiration.
+         *
+         * @since 1.4.0
+         */
+        private final Runnable task;
+
+        /**
+         * The tick when this timeout expire.
+         *
+         * @since 1.4.0
+         */
+        private final long deadlineTick;
+
+        /**
+         * Previous timeout in the same bucket.
+         *
+         * @since 1.4.0
+         */
+        private Timeout prev;
+
+        /**
+         * Next timeout in the same bucket.
+         *
+         * @since 1.4.0
+         */
+        private Timeout next;
+
+        /**
+         * Is this timeout still waiting in the wheel?
+         *
+         * @since 1.4.0
+         */
+        private boolean scheduled;
+
+        /**
+         * Build a new timeout.
+         *
+         * @param timerWheel   The wheel owning this timeout
+         * @param task         The task to run on expiration
+         * @param deadlineTick The tick when this timeout expire
+         * @since 1.4.0
+         */
+        private Timeout(final HashedTimerWheel timerWheel, final Runnable task, final long deadlineTick) {
+            this.timerWheel = timerWheel;
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Cancel this timeout. Does nothing if the task already ran.
+         *
+         * @since 1.4.0
+         */
+        public void cancel() {
+            if (this.scheduled) {
+                this.timerWheel.__unlink(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package core.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental, byte oriented, line framer. Received bytes are appended to
+ * an internal buffer and each byte is scanned for the end of line only
+ * once. Complete lines are exposed as slices of the internal buffer (no
+ * copy), valid until the next call to {@code append}. This class is not
+ * thread safe.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class LineFramer {
+
+    /**
+     * Initial size of the internal buffer.
+     *
+     * @since 1.4.0
+     */
+    private static final int INITIAL_CAPACITY = 256;
+
+    /**
+     * Maximal length of a line (without end of line).
+     *
+     * @since 1.4.0
+     */
+    private final int maxLineLength;
+
+    /**
+     * Maximal number of bytes buffered.
+     *
+     * @since 1.4.0
+     */
+    private final int maxBuffered;
+
+    /**
+     * The internal buffer.
+     *
+     * @since 1.4.0
+     */
+    private byte[] buffer;
+
+    /**
+     * Start of the first non consumed line.
+     *
+     * @since 1.4.0
+     */
+    private int start;
+
+    /**
+     * End of the valid data.
+     *
+     * @since 1.4.0
+     */
+    private int end;
+
+    /**
+     * Next position to scan. Bytes between {@code start} and
+     * {@code scanPos} are known to contain no end of line.
+     *
+     * @since 1.4.0
+     */
+    private int scanPos;
+
+    /**
+     * Position of the next end of line already found, otherwise -1.
+     *
+     * @since 1.4.0
+     */
+    private int newlinePos;
+
+    /**
+     * Start of the current line slice.
+     *
+     * @since 1.4.0
+     */
+    private int lineStart;
+
+    /**
+     * Length of the current line slice.
+     *
+     * @since 1.4.0
+     */
+    private int lineLength;
+
+    /**
+     * Has a line exceeded the maximal length?
+     *
+     * @since 1.4.0
+     */
+    private boolean overflow;
+
+    /**
+     * Build a new line framer.
+     *
+     * @param maxLineLength The maximal length of a line
+     * @param maxBuffered   The maximal number of bytes buffered
+     * @since 1.4.0
+     */
+    public LineFramer(final int maxLineLength, final int maxBuffered) {
+        this.maxLineLength = maxLineLength;
+        this.maxBuffered = Math.max(maxBuffered, maxLineLength + 1);
+        this.buffer = new byte[Math.min(LineFramer.INITIAL_CAPACITY, this.maxBuffered)];
+        this.start = 0;
+        this.end = 0;
+        this.scanPos = 0;
+        this.newlinePos = -1;
+        this.overflow = false;
+    }
+
+    /**
+     * Get the number of bytes that can still be appended.
+     *
+     * @return The number of bytes
+     * @since 1.4.0
+     */
+    public int remainingCapacity() {
+        return this.maxBuffered - (this.end - this.start);
+    }
+
+    /**
+     * Append received bytes. No more than {@code remainingCapacity()}
+     * bytes are consumed from the source buffer.
+     *
+     * @param src The received bytes, ready to be read
+     * @since 1.4.0
+     */
+    public void append(final ByteBuffer src) {
+        final int length = Math.min(src.remaining(), this.remainingCapacity());
+        if (this.end + length > this.buffer.length) {
+            this.__compact();
+            if (this.end + length > this.buffer.length) {
+                int newCapacity = this.buffer.length;
+                while (newCapacity < this.end + length) {
+                    newCapacity <<= 1;
+                }
+                final byte[] newBuffer = new byte[Math.min(newCapacity, this.maxBuffered)];
+                System.arraycopy(this.buffer, 0, newBuffer, 0, this.end);
+                this.buffer = newBuffer;
+            }
+        }
+        src.get(this.buffer, this.end, length);
+        this.end += length;
+        if (!this.hasLine() && (this.end - this.start) > this.maxLineLength) {
+            this.overflow = true;
+        }
+    }
+
+    /**
+     * Move the non consumed data at the beginning of the internal buffer.
+     *
+     * @since 1.4.0
+     */
+    private void __compact() {
+        if (this.start > 0) {
+            System.arraycopy(this.buffer, this.start, this.buffer, 0, this.end - this.start);
+            this.end -= this.start;
+            this.scanPos -= this.start;
+            if (this.newlinePos >= 0) {
+                this.newlinePos -= this.start;
+            }
+            this.start = 0;
+        }
+    }
+
+    /**
+     * Check if a complete line is available.
+     *
+     * @return {@code true} if a complete line is available, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean hasLine() {
+        if (this.newlinePos < 0) {
+            for (int i = this.scanPos; i < this.end; ++i) {
+                if (this.buffer[i] == '\n') {
+                    this.newlinePos = i;
+                    this.scanPos = i;
+                    return true;
+                }
+            }
+            this.scanPos = this.end;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Move to the next complete line. The line is then available through
+     * {@code array()}, {@code lineStart()} and {@code lineLength()},
+     * without its end of line.
+     *
+     * @return {@code true} if a line is available, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean nextLine() {
+        if (this.overflow || !this.hasLine()) {
+            return false;
+        }
+        this.lineStart = this.start;
+        this.lineLength = this.newlinePos - this.start;
+        if (this.lineLength > 0 && this.buffer[this.newlinePos - 1] == '\r') {
+            this.lineLength -= 1;
+        }
+        this.start = this.newlinePos + 1;
+        this.scanPos = this.start;
+        this.newlinePos = -1;
+        if (this.start == this.end) {
+            this.start = 0;
+            this.end = 0;
+            this.scanPos = 0;
+        }
+        if (this.lineLength > this.maxLineLength) {
+            this.overflow = true;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the internal buffer holding the current line.
+     *
+     * @return The internal buffer
+     * @since 1.4.0
+     */
+    public byte[] array() {
+        return this.buffer;
+    }
+
+    /**
+     * Get the start of the current line in {@code array()}.
+     *
+     * @return The start offset
+     * @since 1.4.0
+     */
+    public int lineStart() {
+        return this.lineStart;
+    }
+
+    /**
+     * Get the length of the current line.
+     *
+     * @return The line length
+     * @since 1.4.0
+     */
+    public int lineLength() {
+        return this.lineLength;
+    }
+
+    /**
+     * Check if a line has exceeded the maximal length.
+     *
+     * @return {@code true} if a line is too long, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean isOverflow() {
+        return this.overflow;
+    }
+}
@@ -0,0 +1,243 @@
+package core.network;
+
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * {@code NIOConnection} contain the state tracked by a {@code NIOWorker}
+ * for each connected socket. The connection is attached to the socket
+ * {@code SelectionKey}, so it is obtained without any lookup on each event.
+ * The application can attach its own object with {@code setAttachment}.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @see core.network.NIOWorker
+ * @since 1.4.0
+ */
+public final class NIOConnection {
+
+    /**
+     * Unique identifier of this connection.
+     *
+     * @since 1.4.0
+     */
+    final long id;
+
+    /**
+     * The socket of this connection.
+     *
+     * @since 1.4.0
+     */
+    final SocketChannel socket;
+
+    /**
+     * The worker owning this connection.
+     *
+     * @since 1.4.0
+     */
+    final NIOWorker worker;
+
+    /**
+     * The selection key of the socket.
+     *
+     * @since 1.4.0
+     */
+    SelectionKey key;
+
+    /**
+     * Time in milliseconds of the last activity (RX).
+     *
+     * @since 1.4.0
+     */
+    volatile long lastActivity;
+
+    /**
+     * Why this connection will be closed, {@code null} while connected.
+     *
+     * @since 1.4.0
+     */
+    private DisconnectReason disconnectReason;
+
+    /**
+     * The application object attached to this connection.
+     *
+     * @since 1.4.0
+     */
+    private volatile Object attachment;
+
+    /**
+     * Timeout used to check the socket TTL.
+     *
+     * @since 1.4.0
+     */
+    HashedTimerWheel.Timeout ttlTimeout;
+
+    /**
+     * Timeout used to notify the listener about the socket inactivity.
+     *
+     * @since 1.4.0
+     */
+    HashedTimerWheel.Timeout idleTimeout;
+
+    /**
+     * Build a new connection.
+     *
+     * @param id     The unique identifier of this connection
+     * @param socket The socket of this connection
+     * @param worker The worker owning this connection
+     * @since 1.4.0
+     */
+    NIOConnection(final long id, final SocketChannel socket, final NIOWorker worker) {
+        this.id = id;
+        this.socket = socket;
+        this.worker = worker;
+        this.lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * Get the unique identifier of this connection.
+     *
+     * @return The identifier
+     * @since 1.4.0
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * Get the socket of this connection.
+     *
+     * @return The socket
+     * @since 1.4.0
+     */
+    public SocketChannel getSocket() {
+        return this.socket;
+    }
+
+    /**
+     * Get the selector owning this connection.
+     *
+     * @return The selector
+     * @since 1.4.0
+     */
+    public Selector getSelector() {
+        return this.worker.getSelector();
+    }
+
+    /**
+     * Get the selection key of the socket.
+     *
+     * @return The selection key
+     * @since 1.4.0
+     */
+    public SelectionKey getKey() {
+        return this.key;
+    }
+
+    /**
+     * Post a task to be run by the worker owning this connection. This
+     * method can be called from any thread.
+     *
+     * @param task The task to run
+     * @since 1.4.0
+     */
+    public void post(final Runnable task) {
+        this.worker.post(task);
+    }
+
+    /**
+     * Schedule a task to be run by the worker owning this connection after
+     * the given delay. Must be called from this worker.
+     *
+     * @param task  The task to run
+     * @param delay The delay in milliseconds
+     * @return The timeout handle, can be used to cancel the task
+     * @since 1.4.0
+     */
+    public HashedTimerWheel.Timeout schedule(final Runnable task, final long delay) {
+        return this.worker.schedule(task, delay);
+    }
+
+    /**
+     * Close this connection without waiting for the pending data to be
+     * sent. This method can be called from any thread.
+     *
+     * @param reason Why you have disconnected this client?
+     * @since 1.4.0
+     */
+    public void disconnect(final DisconnectReason reason) {
+        this.worker.post(() -> this.worker.addToDisconnect(this, reason));
+    }
+
+    /**
+     * Get the time in milliseconds of the last activity.
+     *
+     * @return The time of the last activity
+     * @since 1.4.0
+     */
+    public long getLastActivity() {
+        return this.lastActivity;
+    }
+
+    /**
+     * Get the application object attached to this connection.
+     *
+     * @return The attached object, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    public Object getAttachment() {
+        return this.attachment;
+    }
+
+    /**
+     * Attach an application object to this connection.
+     *
+     * @param attachment The object to attach
+     * @since 1.4.0
+     */
+    public void setAttachment(final Object attachment) {
+        this.attachment = attachment;
+    }
+
+    /**
+     * Get why this connection will be closed.
+     *
+     * @return The disconnection reason, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    public synchronized DisconnectReason getDisconnectReason() {
+        return this.disconnectReason;
+    }
+
+    /**
+     * Flag this connection to be closed. Only the first reason is kept.
+     *
+     * @param reason The disconnection reason
+     * @return {@code true} if the connection was not already flagged, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    synchronized boolean flagDisconnect(final DisconnectReason reason) {
+        if (this.disconnectReason == null) {
+            this.disconnectReason = reason;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Cancel all pending timeouts of this connection.
+     *
+     * @since 1.4.0
+     */
+    void cancelTimeouts() {
+        if (this.ttlTimeout != null) {
+            this.ttlTimeout.cancel();
+            this.ttlTimeout = null;
+        }
+        if (this.idleTimeout != null) {
+            this.idleTimeout.cancel();
+            this.idleTimeout = null;
+        }
+    }
+}
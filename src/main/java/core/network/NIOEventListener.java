@@ -2,13 +2,13 @@ package core.network;
 
 import java.io.IOException;
 import java.nio.channels.Selector;
-import java.nio.channels.SocketChannel;
+import java.time.Instant;
 
 /**
  * Provide interface to the event callbacks of NIO Server class.
  *
  * @author Thibault Meyer
- * @version 1.2.0
+ * @version 1.4.0
  * @see core.network.NIOServer
  * @since 1.0.0
  */
@@ -17,34 +17,34 @@ public interface NIOEventListener {
     /**
      * Called each time a new channel is accepted.
      *
-     * @param selector The event selector
-     * @param socket   The channel socket
+     * @param selector   The event selector
+     * @param connection The channel connection
      * @throws java.io.IOException If IO operation fail (like read/write on socket)
      * @since 1.0.0
      */
-    void onAcceptableEvent(Selector selector, SocketChannel socket) throws IOException;
+    void onAcceptableEvent(Selector selector, NIOConnection connection) throws IOException;
 
     /**
      * Called each time a channel is ready to read.
      *
-     * @param selector The event selector
-     * @param socket   The channel socket
+     * @param selector   The event selector
+     * @param connection The channel connection
      * @return The number of read bytes
      * @throws java.io.IOException If IO operation fail (like read/write on socket)
      * @since 1.0.0
      */
-    int onReadableEvent(Selector selector, SocketChannel socket) throws IOException;
+    int onReadableEvent(Selector selector, NIOConnection connection) throws IOException;
 
     /**
      * Called each time a channel is ready to write.
      *
-     * @param selector The event selector
-     * @param socket   The channel socket
+     * @param selector   The event selector
+     * @param connection The channel connection
      * @return The number of wrote bytes
      * @throws java.io.IOException If IO operation fail (like read/write on socket)
      * @since 1.0.0
      */
-    int onWritableEvent(Selector selector, SocketChannel socket) throws IOException;
+    int onWritableEvent(Selector selector, NIOConnection connection) throws IOException;
 
     /**
      * Called each time the select() method timeout.
@@ -65,13 +65,25 @@ public interface NIOEventListener {
      */
     void onFinalize(Selector selector) throws IOException;
 
+    /**
+     * Called when no activity has been detected on the channel during the
+     * configured inactivity delay. Only the inactive channels are notified.
+     *
+     * @param selector     The event selector
+     * @param connection   The channel connection
+     * @param lastActivity The {@code Instant} of the last activity
+     * @throws java.io.IOException If IO operation fail (like read/write on socket)
+     * @since 1.4.0
+     */
+    void onIdleEvent(Selector selector, NIOConnection connection, Instant lastActivity) throws IOException;
+
     /**
      * Called when socket channel will be closed.
      *
-     * @param socket      The socket channel
+     * @param connection  The channel connection
      * @param discoReason The disconnection reason
      * @throws java.io.IOException If IO operation fail (like read/write on socket)
      * @since 1.0.0
      */
-    void onDisconnected(SocketChannel socket, DisconnectReason discoReason) throws IOException;
+    void onDisconnected(NIOConnection connection, DisconnectReason discoReason) throws IOException;
 }
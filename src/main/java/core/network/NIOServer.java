@@ -5,22 +5,20 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.time.Instant;
-import java.util.ConcurrentModificationException;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Non blocking socket server using Java NIO.
+ * Non blocking socket server using Java NIO. A dedicated acceptor thread
+ * hands each accepted socket to the least loaded of the {@code NIOWorker}
+ * reactors, each one owning its own {@code Selector}.
  *
  * @author Thibault Meyer
- * @version 1.1.2
+ * @version 1.4.0
+ * @see core.network.NIOWorker
  * @since 1.0.0
  */
 public class NIOServer implements Runnable {
@@ -47,20 +45,32 @@ public class NIOServer implements Runnable {
     private final int socketListenPort;
 
     /**
-     * The current connected clients with the time when
-     * the connection was established.
+     * The current number of connected clients.
      *
-     * @see Instant
-     * @since 1.0.0
+     * @since 1.4.0
      */
-    private final Map<SocketChannel, Instant> connectedSocket;
+    private final AtomicInteger connectedCount;
 
     /**
-     * The clients to disconnect.
+     * Sequence used to give a unique identifier to each connection.
      *
-     * @since 1.0.0
+     * @since 1.4.0
+     */
+    private final AtomicLong connectionIdSequence;
+
+    /**
+     * The worker reactors.
+     *
+     * @since 1.4.0
+     */
+    private NIOWorker[] workers;
+
+    /**
+     * The number of worker reactors to start.
+     *
+     * @since 1.4.0
      */
-    private final Map<SocketChannel, DisconnectReason> toDisconnectSocket;
+    private int workerCount;
 
     /**
      * The internal select timeout.
@@ -76,6 +86,22 @@ public class NIOServer implements Runnable {
      */
     private int socketTTL;
 
+    /**
+     * The inactivity delay in milliseconds before the listener is notified
+     * by {@code onIdleEvent}. Disabled if lower or equal to 0.
+     *
+     * @since 1.4.0
+     */
+    private long socketIdleNotify;
+
+    /**
+     * The delay in milliseconds between two {@code onIdleEvent} on the
+     * same inactive socket.
+     *
+     * @since 1.4.0
+     */
+    private long socketIdleRepeat;
+
     /**
      * The maximum number of connection allowed.
      *
@@ -95,46 +121,33 @@ public class NIOServer implements Runnable {
         this.eventListener = event_listener;
         this.socketListenPort = listen_port;
         this.selectTimeout = select_timeout;
-        this.connectedSocket = new ConcurrentHashMap<>();
-        this.toDisconnectSocket = new ConcurrentHashMap<>();
+        this.connectedCount = new AtomicInteger(0);
+        this.connectionIdSequence = new AtomicLong(0);
+        this.workerCount = 1;
         this.socketTTL = 15;
+        this.socketIdleNotify = 0;
+        this.socketIdleRepeat = 0;
         this.socketMaxConn = 256;
     }
 
     /**
-     * Check socket TTL and disconnect flagged socket.
+     * Get the least loaded worker.
      *
-     * @since 1.0.0
+     * @return The worker to use for the next accepted socket
+     * @since 1.4.0
      */
-    private void __checkSocketToDisconnect() throws ConcurrentModificationException {
-        this.connectedSocket.entrySet().stream().forEach((entry) -> {
-            Instant now = Instant.now();
-            if (entry.getValue().plusSeconds(this.socketTTL).isBefore(now)) {
-                this.toDisconnectSocket.put(entry.getKey(), DisconnectReason.NO_ACTIVITY);
+    private NIOWorker __selectWorker() {
+        NIOWorker selected = this.workers[0];
+        for (int i = 1; i < this.workers.length; ++i) {
+            if (this.workers[i].getConnectionCount() < selected.getConnectionCount()) {
+                selected = this.workers[i];
             }
-        });
-
-        for (Map.Entry<SocketChannel, DisconnectReason> entry : this.toDisconnectSocket.entrySet()) {
-            try {
-                SocketChannel socket = entry.getKey();
-                if (this.eventListener != null) {
-                    try {
-                        this.eventListener.onDisconnected(socket, entry.getValue());
-                    } catch (IOException ignore) {
-                    }
-                }
-                LOG.debug("Client {} disconnected (reason: {})", socket.getRemoteAddress(), entry.getValue());
-                socket.finishConnect();
-                socket.close();
-            } catch (IOException | ClassCastException ignore) {
-            }
-            toDisconnectSocket.remove(entry.getKey());
-            connectedSocket.remove(entry.getKey());
         }
+        return selected;
     }
 
     /**
-     * Run the NIO socket server.
+     * Run the NIO socket server. The calling thread becomes the acceptor.
      *
      * @since 1.0.0
      */
@@ -145,83 +158,27 @@ public class NIOServer implements Runnable {
             serverSocketChannel.socket().bind(new InetSocketAddress(this.socketListenPort));
             LOG.info("Listen on 0.0.0.0:{}", serverSocketChannel.socket().getLocalPort());
 
-            serverSocketChannel.configureBlocking(false);
-            Selector selector = Selector.open();
-            serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+            this.workers = new NIOWorker[this.workerCount];
+            for (int i = 0; i < this.workerCount; ++i) {
+                this.workers[i] = new NIOWorker(this, this.eventListener);
+                final Thread workerThread = new Thread(this.workers[i], String.format("nio-worker-%d", i));
+                workerThread.start();
+            }
+            LOG.info("{} worker(s) started", this.workerCount);
+
+            serverSocketChannel.configureBlocking(true);
             while (true) {
-                int readyChannels = selector.select(this.selectTimeout);
-                if (readyChannels == 0) {
-                    if (this.eventListener != null) {
-                        this.eventListener.onTimeoutEvent(selector);
-                    }
+                final SocketChannel client = serverSocketChannel.accept();
+                LOG.debug("New client connected from {}", client.getRemoteAddress());
+                if (this.connectedCount.incrementAndGet() > this.socketMaxConn) {
+                    this.connectedCount.decrementAndGet();
+                    LOG.debug("Client {} disconnected (reason: {})", client.getRemoteAddress(), DisconnectReason.TOO_MANY_CLIENTS);
                     try {
-                        __checkSocketToDisconnect();
-                    } catch (ConcurrentModificationException ignore) {
-                    }
-                    continue;
-                }
-                final Set<SelectionKey> selectedKeys = selector.selectedKeys();
-                final Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
-                while (keyIterator.hasNext()) {
-                    SelectionKey key = keyIterator.next();
-                    if (key.isAcceptable()) {
-                        SocketChannel client = serverSocketChannel.accept();
-                        LOG.debug("New client connected from {}", client.getRemoteAddress());
-                        if (this.connectedSocket.size() >= this.socketMaxConn) {
-                            this.toDisconnectSocket.put(client, DisconnectReason.TOO_MANY_CLIENTS);
-                        } else {
-                            client.configureBlocking(false);
-                            client.register(selector, SelectionKey.OP_READ);
-                            this.connectedSocket.put(client, Instant.now());
-                            if (this.eventListener != null) {
-                                try {
-                                    this.eventListener.onAcceptableEvent(selector, client);
-                                } catch (IOException ignore) {
-                                }
-                            }
-                        }
-                    } else if (key.isReadable()) {
-                        SocketChannel client = (SocketChannel) key.channel();
-                        int nbRead = -1;
-                        this.connectedSocket.put(client, Instant.now());
-                        if (this.eventListener != null) {
-                            try {
-                                nbRead = this.eventListener.onReadableEvent(selector, client);
-                            } catch (IOException ignore) {
-                                nbRead = -1;
-                            }
-                        }
-                        if (nbRead == -1) {
-                            this.toDisconnectSocket.put(client, DisconnectReason.CLIENT_GONE_AWAY);
-                        }
-                    } else if (key.isWritable()) {
-                        SocketChannel client = (SocketChannel) key.channel();
-                        int nbWrite = -1;
-                        if (this.eventListener != null) {
-                            try {
-                                nbWrite = this.eventListener.onWritableEvent(selector, client);
-                            } catch (IOException ex) {
-                                LOG.debug("Network Write error", ex);
-                                nbWrite = -1;
-                            }
-                        }
-                        if (nbWrite == -1) {
-                            this.toDisconnectSocket.put(client, DisconnectReason.CLIENT_GONE_AWAY);
-                        }
-                    }
-                    keyIterator.remove();
-                }
-                if (this.eventListener != null) {
-                    try {
-                        this.eventListener.onFinalize(selector);
-                    } catch (IOException ex) {
-                        LOG.warn("Error on onFinalize() callback", ex);
+                        client.close();
+                    } catch (IOException ignore) {
                     }
-                }
-                try {
-                    this.__checkSocketToDisconnect();
-                } catch (ConcurrentModificationException ex) {
-                    LOG.warn("Concurrent modification detected!", ex);
+                } else {
+                    this.__selectWorker().addClient(client);
                 }
             }
         } catch (IOException e) {
@@ -229,6 +186,65 @@ public class NIOServer implements Runnable {
         }
     }
 
+    /**
+     * Release a connection slot previously taken by the acceptor.
+     *
+     * @since 1.4.0
+     */
+    void releaseConnectionSlot() {
+        this.connectedCount.decrementAndGet();
+    }
+
+    /**
+     * Get a new unique connection identifier.
+     *
+     * @return The connection identifier
+     * @since 1.4.0
+     */
+    long nextConnectionId() {
+        return this.connectionIdSequence.incrementAndGet();
+    }
+
+    /**
+     * Get the NIO server timeout value.
+     *
+     * @return The timeout value
+     * @since 1.4.0
+     */
+    public long getSelectTimeout() {
+        return this.selectTimeout;
+    }
+
+    /**
+     * Get the time in seconds before inactive socket was closed.
+     *
+     * @return The TTL in seconds
+     * @since 1.4.0
+     */
+    public int getSocketTTL() {
+        return this.socketTTL;
+    }
+
+    /**
+     * Get the inactivity delay before the listener is notified.
+     *
+     * @return The delay in milliseconds
+     * @since 1.4.0
+     */
+    public long getSocketIdleNotify() {
+        return this.socketIdleNotify;
+    }
+
+    /**
+     * Get the delay between two inactivity notifications.
+     *
+     * @return The delay in milliseconds
+     * @since 1.4.0
+     */
+    public long getSocketIdleRepeat() {
+        return this.socketIdleRepeat;
+    }
+
     /**
      * Change the NIO server timeout value.
      *
@@ -244,33 +260,33 @@ public class NIOServer implements Runnable {
     /**
      * Reset the socket inactivity.
      *
-     * @param socket The socket
+     * @param connection The connection
      * @since 1.0.0
      */
-    public void resetInactivityTTL(SocketChannel socket) {
-        this.connectedSocket.put(socket, Instant.now());
+    public void resetInactivityTTL(NIOConnection connection) {
+        connection.lastActivity = System.currentTimeMillis();
     }
 
     /**
-     * Get the socket TTL.
+     * Get the socket last activity.
      *
-     * @param socket The socket
-     * @return the {@code Instant} when the socket will be closed
+     * @param connection The connection
+     * @return the {@code Instant} of the last activity
      * @since 1.0.0
      */
-    public Instant getInactivityTTL(SocketChannel socket) {
-        return this.connectedSocket.get(socket);
+    public Instant getInactivityTTL(NIOConnection connection) {
+        return Instant.ofEpochMilli(connection.lastActivity);
     }
 
     /**
-     * Add key to be disconnected by the server.
+     * Add connection to be disconnected by the server.
      *
-     * @param socket The socket
-     * @param reason Why you have disconnected this client?
+     * @param connection The connection
+     * @param reason     Why you have disconnected this client?
      * @since 1.0.0
      */
-    public void addToDisconnect(SocketChannel socket, DisconnectReason reason) {
-        this.toDisconnectSocket.put(socket, reason);
+    public void addToDisconnect(NIOConnection connection, DisconnectReason reason) {
+        connection.worker.addToDisconnect(connection, reason);
     }
 
     /**
@@ -283,6 +299,20 @@ public class NIOServer implements Runnable {
         this.socketTTL = ttl;
     }
 
+    /**
+     * Set the inactivity delay before the listener is notified by
+     * {@code onIdleEvent}, and the delay before the next notification
+     * if the socket is still inactive. Must be called before {@code run()}.
+     *
+     * @param notify The delay in milliseconds (0 to disable)
+     * @param repeat The repeat delay in milliseconds
+     * @since 1.4.0
+     */
+    public void setSocketIdleNotify(long notify, long repeat) {
+        this.socketIdleNotify = notify;
+        this.socketIdleRepeat = Math.max(repeat, 1);
+    }
+
     /**
      * Set the maximum number of connected sockets.
      *
@@ -292,4 +322,14 @@ public class NIOServer implements Runnable {
     public void setMaxConn(int max) {
         this.socketMaxConn = max;
     }
+
+    /**
+     * Set the number of worker reactors. Must be called before {@code run()}.
+     *
+     * @param count The number of workers (at least 1)
+     * @since 1.4.0
+     */
+    public void setWorkerCount(int count) {
+        this.workerCount = Math.max(1, count);
+    }
 }
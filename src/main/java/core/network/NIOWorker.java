@@ -0,0 +1,384 @@
+package core.network;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Worker reactor owning its own {@code Selector}. Each accepted socket is
+ * handed to exactly one worker which then handles it end to end (read,
+ * write, TTL and disconnection).
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @see core.network.NIOServer
+ * @since 1.4.0
+ */
+public class NIOWorker implements Runnable {
+
+    /**
+     * Logger.
+     *
+     * @since 1.4.0
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(NIOWorker.class.getName());
+
+    /**
+     * Duration of a timer wheel tick in milliseconds.
+     *
+     * @since 1.4.0
+     */
+    private static final long TIMER_TICK_DURATION = 100;
+
+    /**
+     * Number of buckets of the timer wheel.
+     *
+     * @since 1.4.0
+     */
+    private static final int TIMER_WHEEL_SIZE = 512;
+
+    /**
+     * The NIO server owning this worker.
+     *
+     * @since 1.4.0
+     */
+    private final NIOServer nioServer;
+
+    /**
+     * Java NIO event listener.
+     *
+     * @since 1.4.0
+     */
+    private final NIOEventListener eventListener;
+
+    /**
+     * The selector owned by this worker.
+     *
+     * @since 1.4.0
+     */
+    private final Selector selector;
+
+    /**
+     * The connections to disconnect.
+     *
+     * @see NIOConnection
+     * @since 1.4.0
+     */
+    private final Queue<NIOConnection> toDisconnect;
+
+    /**
+     * Tasks posted from other threads to be run by this worker.
+     *
+     * @since 1.4.0
+     */
+    private final Queue<Runnable> pendingTasks;
+
+    /**
+     * The number of connections assigned to this worker.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicInteger connectionCount;
+
+    /**
+     * Timer wheel used to schedule TTL and inactivity checks.
+     *
+     * @since 1.4.0
+     */
+    private final HashedTimerWheel timerWheel;
+
+    /**
+     * Constructor.
+     *
+     * @param nioServer     The NIO server owning this worker
+     * @param eventListener An event listener instance
+     * @throws IOException If the selector can't be opened
+     * @since 1.4.0
+     */
+    public NIOWorker(final NIOServer nioServer, final NIOEventListener eventListener) throws IOException {
+        this.nioServer = nioServer;
+        this.eventListener = eventListener;
+        this.selector = Selector.open();
+        this.toDisconnect = new ConcurrentLinkedQueue<>();
+        this.pendingTasks = new ConcurrentLinkedQueue<>();
+        this.connectionCount = new AtomicInteger(0);
+        this.timerWheel = new HashedTimerWheel(NIOWorker.TIMER_TICK_DURATION, NIOWorker.TIMER_WHEEL_SIZE);
+    }
+
+    /**
+     * Run all tasks posted to this worker.
+     *
+     * @since 1.4.0
+     */
+    private void __runPendingTasks() {
+        Runnable task;
+        while ((task = this.pendingTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException ex) {
+                LOG.warn("Error during posted task execution", ex);
+            }
+        }
+    }
+
+    /**
+     * Register a newly accepted client on this worker. Must be called from
+     * the worker thread.
+     *
+     * @param client The accepted socket
+     * @since 1.4.0
+     */
+    private void __registerClient(final SocketChannel client) {
+        try {
+            client.configureBlocking(false);
+            client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            final NIOConnection connection = new NIOConnection(this.nioServer.nextConnectionId(), client, this);
+            connection.key = client.register(this.selector, SelectionKey.OP_READ, connection);
+            this.__scheduleTTLCheck(connection, this.nioServer.getSocketTTL() * 1000L);
+            if (this.nioServer.getSocketIdleNotify() > 0) {
+                this.__scheduleIdleCheck(connection, this.nioServer.getSocketIdleNotify());
+            }
+            if (this.eventListener != null) {
+                try {
+                    this.eventListener.onAcceptableEvent(this.selector, connection);
+                } catch (IOException ignore) {
+                }
+            }
+        } catch (IOException ex) {
+            LOG.debug("Can't register new client", ex);
+            this.connectionCount.decrementAndGet();
+            this.nioServer.releaseConnectionSlot();
+            try {
+                client.close();
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Schedule the TTL check of the given connection. When the timeout
+     * expire, the connection is disconnected if no activity has been
+     * detected since, otherwise the check is rescheduled at the new deadline.
+     *
+     * @param connection The connection
+     * @param delay      The delay in milliseconds
+     * @since 1.4.0
+     */
+    private void __scheduleTTLCheck(final NIOConnection connection, final long delay) {
+        connection.ttlTimeout = this.timerWheel.schedule(() -> {
+            final long remaining = connection.lastActivity + this.nioServer.getSocketTTL() * 1000L - System.currentTimeMillis();
+            if (remaining < 0) {
+                connection.ttlTimeout = null;
+                this.addToDisconnect(connection, DisconnectReason.NO_ACTIVITY);
+            } else {
+                this.__scheduleTTLCheck(connection, remaining);
+            }
+        }, delay);
+    }
+
+    /**
+     * Schedule the inactivity check of the given connection. When the
+     * timeout expire, the listener is notified if no activity has been
+     * detected since, otherwise the check is rescheduled at the new deadline.
+     *
+     * @param connection The connection
+     * @param delay      The delay in milliseconds
+     * @since 1.4.0
+     */
+    private void __scheduleIdleCheck(final NIOConnection connection, final long delay) {
+        connection.idleTimeout = this.timerWheel.schedule(() -> {
+            final long idleNotify = this.nioServer.getSocketIdleNotify();
+            final long now = System.currentTimeMillis();
+            final long remaining = connection.lastActivity + idleNotify - now;
+            if (remaining < 0) {
+                if (this.eventListener != null) {
+                    try {
+                        this.eventListener.onIdleEvent(this.selector, connection, Instant.ofEpochMilli(connection.lastActivity));
+                    } catch (IOException ignore) {
+                    }
+                }
+                this.__scheduleIdleCheck(connection, this.nioServer.getSocketIdleRepeat());
+            } else {
+                this.__scheduleIdleCheck(connection, remaining);
+            }
+        }, delay);
+    }
+
+    /**
+     * Disconnect flagged socket.
+     *
+     * @since 1.4.0
+     */
+    private void __checkSocketToDisconnect() {
+        NIOConnection connection;
+        while ((connection = this.toDisconnect.poll()) != null) {
+            final DisconnectReason reason = connection.getDisconnectReason();
+            try {
+                if (this.eventListener != null) {
+                    try {
+                        this.eventListener.onDisconnected(connection, reason);
+                    } catch (IOException ignore) {
+                    }
+                }
+                LOG.debug("Client {} disconnected (reason: {})", connection.socket.getRemoteAddress(), reason);
+                connection.socket.finishConnect();
+                connection.socket.close();
+            } catch (IOException | ClassCastException ignore) {
+            }
+            connection.cancelTimeouts();
+            this.connectionCount.decrementAndGet();
+            this.nioServer.releaseConnectionSlot();
+        }
+    }
+
+    /**
+     * Run the worker event loop.
+     *
+     * @since 1.4.0
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                final int readyChannels = this.selector.select(this.nioServer.getSelectTimeout());
+                this.__runPendingTasks();
+                this.timerWheel.advance(System.currentTimeMillis());
+                if (readyChannels == 0) {
+                    if (this.eventListener != null) {
+                        this.eventListener.onTimeoutEvent(this.selector);
+                    }
+                    this.__checkSocketToDisconnect();
+                    continue;
+                }
+                final Set<SelectionKey> selectedKeys = this.selector.selectedKeys();
+                final Iterator<SelectionKey> keyIterator = selectedKeys.iterator();
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    final NIOConnection connection = (NIOConnection) key.attachment();
+                    if (key.isReadable()) {
+                        int nbRead = -1;
+                        connection.lastActivity = System.currentTimeMillis();
+                        if (this.eventListener != null) {
+                            try {
+                                nbRead = this.eventListener.onReadableEvent(this.selector, connection);
+                            } catch (IOException ignore) {
+                                nbRead = -1;
+                            }
+                        }
+                        if (nbRead == -1) {
+                            this.addToDisconnect(connection, DisconnectReason.CLIENT_GONE_AWAY);
+                        }
+                    } else if (key.isWritable()) {
+                        int nbWrite = -1;
+                        if (this.eventListener != null) {
+                            try {
+                                nbWrite = this.eventListener.onWritableEvent(this.selector, connection);
+                            } catch (IOException ex) {
+                                LOG.debug("Network Write error", ex);
+                                nbWrite = -1;
+                            }
+                        }
+                        if (nbWrite == -1) {
+                            this.addToDisconnect(connection, DisconnectReason.CLIENT_GONE_AWAY);
+                        }
+                    }
+                }
+                if (this.eventListener != null) {
+                    try {
+                        this.eventListener.onFinalize(this.selector);
+                    } catch (IOException ex) {
+                        LOG.warn("Error on onFinalize() callback", ex);
+                    }
+                }
+                this.__checkSocketToDisconnect();
+            }
+        } catch (IOException e) {
+            LOG.error("Worker selector failure", e);
+        }
+    }
+
+    /**
+     * Hand a newly accepted socket to this worker. The socket will be
+     * registered by the worker thread on its next loop.
+     *
+     * @param client The accepted socket
+     * @since 1.4.0
+     */
+    public void addClient(final SocketChannel client) {
+        this.connectionCount.incrementAndGet();
+        this.post(() -> this.__registerClient(client));
+    }
+
+    /**
+     * Post a task to be run by the worker thread and wake up the selector.
+     *
+     * @param task The task to run
+     * @since 1.4.0
+     */
+    public void post(final Runnable task) {
+        this.pendingTasks.add(task);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Schedule a task to be run by the worker thread after the given
+     * delay. Must be called from the worker thread.
+     *
+     * @param task  The task to run
+     * @param delay The delay in milliseconds
+     * @return The timeout handle, can be used to cancel the task
+     * @since 1.4.0
+     */
+    public HashedTimerWheel.Timeout schedule(final Runnable task, final long delay) {
+        return this.timerWheel.schedule(task, delay);
+    }
+
+    /**
+     * Get the selector owned by this worker.
+     *
+     * @return The selector
+     * @since 1.4.0
+     */
+    public Selector getSelector() {
+        return this.selector;
+    }
+
+    /**
+     * Get the number of connections owned by this worker.
+     *
+     * @return The number of connections
+     * @since 1.4.0
+     */
+    public int getConnectionCount() {
+        return this.connectionCount.get();
+    }
+
+    /**
+     * Add connection to be disconnected by this worker. Only the first
+     * reason given for a connection is kept.
+     *
+     * @param connection The connection
+     * @param reason     Why you have disconnected this client?
+     * @since 1.4.0
+     */
+    public void addToDisconnect(final NIOConnection connection, final DisconnectReason reason) {
+        if (connection.flagDisconnect(reason)) {
+            this.toDisconnect.add(connection);
+        }
+    }
+}
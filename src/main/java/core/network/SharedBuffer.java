@@ -0,0 +1,113 @@
+package core.network;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Immutable encoded data shared by many output buffers. The data is
+ * encoded once and appended by reference; each holder retains the buffer
+ * and release it once the data has been written or dropped.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class SharedBuffer {
+
+    /**
+     * The encoded data.
+     *
+     * @since 1.4.0
+     */
+    private final byte[] data;
+
+    /**
+     * Number of holders of this buffer.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicInteger refCnt;
+
+    /**
+     * Build a new shared buffer. The caller hold the first reference.
+     *
+     * @param data The encoded data, must not be modified after
+     * @since 1.4.0
+     */
+    public SharedBuffer(final byte[] data) {
+        this.data = data;
+        this.refCnt = new AtomicInteger(1);
+    }
+
+    /**
+     * Build a new shared buffer holding the given string encoded in UTF-8.
+     * The caller hold the first reference.
+     *
+     * @param data The string to encode
+     * @return The shared buffer
+     * @since 1.4.0
+     */
+    public static SharedBuffer of(final String data) {
+        return new SharedBuffer(data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Get the number of bytes.
+     *
+     * @return The number of bytes
+     * @since 1.4.0
+     */
+    public int length() {
+        return this.data.length;
+    }
+
+    /**
+     * Get a new read only view of the data. The view have its own position
+     * and limit.
+     *
+     * @return The view
+     * @since 1.4.0
+     */
+    public ByteBuffer view() {
+        return ByteBuffer.wrap(this.data).asReadOnlyBuffer();
+    }
+
+    /**
+     * Add a holder to this buffer.
+     *
+     * @return This buffer
+     * @throws IllegalStateException If the buffer has already been released
+     * @since 1.4.0
+     */
+    public SharedBuffer retain() {
+        int count;
+        do {
+            count = this.refCnt.get();
+            if (count <= 0) {
+                throw new IllegalStateException("Shared buffer already released");
+            }
+        } while (!this.refCnt.compareAndSet(count, count + 1));
+        return this;
+    }
+
+    /**
+     * Remove a holder from this buffer.
+     *
+     * @return {@code true} if it was the last holder, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean release() {
+        return this.refCnt.decrementAndGet() == 0;
+    }
+
+    /**
+     * Get the number of holders of this buffer.
+     *
+     * @return The number of holders
+     * @since 1.4.0
+     */
+    public int refCnt() {
+        return this.refCnt.get();
+    }
+}
@@ -2,30 +2,41 @@ package core.server;
 
 import core.Settings;
 import core.crypto.MD5;
+import core.network.BufferPool;
+import core.network.LineFramer;
 import core.network.DisconnectReason;
+import core.network.NIOConnection;
 import core.network.NIOEventListener;
 import core.network.NIOServer;
 import core.server.command.Command;
+import core.server.command.CommandBinding;
+import core.server.command.CommandRegistry;
+import core.server.command.Payload;
+import core.server.database.AccountDirectory;
 import core.server.database.DBPool;
+import core.server.session.FanoutScheduler;
+import core.server.session.PresenceRegistry;
 import core.server.session.Session;
+import core.server.session.SessionRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Netsoul dedicated server.
  *
  * @author Thibault Meyer
- * @version 1.3.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public class NSServer implements NIOEventListener {
@@ -45,11 +56,25 @@ public class NSServer implements NIOEventListener {
     private static final long SELECT_TIMEOUT = 50;
 
     /**
-     * Chunk size.
+     * Size of the buffers used to read from sockets.
      *
-     * @since 1.0.0
+     * @since 1.4.0
+     */
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    /**
+     * Number of read buffers allocated at once.
+     *
+     * @since 1.4.0
      */
-    private static final int CHUNK_SIZE = 256;
+    private static final int READ_BUFFERS_PER_SLAB = 64;
+
+    /**
+     * Maximum number of read buffer slabs.
+     *
+     * @since 1.4.0
+     */
+    private static final int READ_BUFFER_MAX_SLABS = 16;
 
     /**
      * NIO Server instance.
@@ -63,57 +88,101 @@ public class NSServer implements NIOEventListener {
      *
      * @since 1.0.0
      */
-    private Map<Integer, Session> connectedUserSessions;
+    private SessionRegistry sessionRegistry;
 
     /**
-     * All enabled commands.
+     * Registry of the enabled commands.
      *
-     * @since 1.0.0
+     * @since 1.4.0
      */
-    private Map<String, Command> enabledCommands;
+    private CommandRegistry commandRegistry;
+
+    /**
+     * Payload reused by each worker thread to tokenize received lines.
+     *
+     * @since 1.4.0
+     */
+    private final ThreadLocal<Payload> workerPayload = ThreadLocal.withInitial(Payload::new);
 
     /**
      * Information about followers.
      *
      * @since 1.0.0
      */
-    private Map<String, List<Session>> globalFollowers;
+    private PresenceRegistry presenceRegistry;
 
     /**
-     * Load all enabled commands.
+     * Sessions having work to do (complete lines or too long line), per
+     * selector.
      *
-     * @since 1.0.0
+     * @since 1.4.0
      */
-    private void __loadEnabledCommands() {
-        InputStream fis = null;
-        try {
-            if (System.getProperty("core.commands", null) != null) {
-                URL u = new URL(System.getProperty("core.commands"));
-                fis = u.openStream();
-            } else {
-                fis = Settings.class.getResourceAsStream("/commands.properties");
-            }
-            Properties properties = new Properties();
-            properties.load(fis);
-
-            for (Map.Entry<Object, Object> e : properties.entrySet()) {
-                try {
-                    final Command cmd = (Command) Class.forName(e.getValue().toString()).newInstance();
-                    this.enabledCommands.put(e.getKey().toString(), cmd);
-                } catch (LinkageError | ClassNotFoundException ex) {
-                    LOG.warn(String.format("Can't load commands \"%s\"", e.getKey()), ex);
-                }
+    private Map<Selector, Queue<Session>> readySessions;
+
+    /**
+     * Number of sessions waiting in the ready sessions queues.
+     *
+     * @since 1.4.0
+     */
+    private AtomicInteger readySessionCount;
+
+    /**
+     * Pool of direct buffers used to read from sockets.
+     *
+     * @since 1.4.0
+     */
+    private BufferPool readBufferPool;
+
+    /**
+     * Number of closed sessions, per disconnection reason.
+     *
+     * @since 1.4.0
+     */
+    private Map<DisconnectReason, AtomicLong> disconnectCounts;
+
+    /**
+     * Number of times a session has been paused by its command rate limit.
+     *
+     * @since 1.4.0
+     */
+    private AtomicLong rateLimitedCount;
+
+    /**
+     * Disconnect the session if the client sent a too long line.
+     *
+     * @param usrSess The user session
+     * @return {@code true} if the session will be disconnected, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    private boolean __checkInputOverflow(final Session usrSess) {
+        if (usrSess.inputBuffer.isOverflow()) {
+            if (usrSess.disconnectReason != DisconnectReason.LINE_TOO_LONG) {
+                LOG.debug("Client from {} sent a too long line", usrSess.network.address);
+                usrSess.disconnectReason = DisconnectReason.LINE_TOO_LONG;
+                this.nioServer.addToDisconnect(usrSess.network.connection, DisconnectReason.LINE_TOO_LONG);
             }
+            return true;
+        }
+        return false;
+    }
 
-        } catch (Throwable e) {
-            LOG.error("Can't open commands file", e);
-            try {
-                if (fis != null) {
-                    fis.close();
-                }
-            } catch (IOException ignore) {
+    /**
+     * Tokenize the next complete line received from the session. Empty
+     * lines are skipped.
+     *
+     * @param usrSess The user session
+     * @param payload The payload to fill
+     * @return {@code true} if a command is available, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    private boolean __nextPayload(final Session usrSess, final Payload payload) {
+        while (usrSess.inputBuffer.nextLine()) {
+            payload.tokenize(usrSess.inputBuffer.array(), usrSess.inputBuffer.lineStart(), usrSess.inputBuffer.lineLength());
+            if (payload.size() > 0) {
+                return true;
             }
         }
+        return false;
     }
 
     /**
@@ -123,19 +192,27 @@ public class NSServer implements NIOEventListener {
      * @since 1.0.0
      */
     public int run() {
-        this.connectedUserSessions = new ConcurrentHashMap<>();
-        this.enabledCommands = new HashMap<>();
-        this.globalFollowers = new HashMap<>();
+        this.sessionRegistry = SessionRegistry.getInstance();
+        this.presenceRegistry = new PresenceRegistry();
+        this.readySessions = new ConcurrentHashMap<>();
+        this.readySessionCount = new AtomicInteger(0);
+        this.readBufferPool = new BufferPool(NSServer.READ_BUFFER_SIZE, NSServer.READ_BUFFERS_PER_SLAB, NSServer.READ_BUFFER_MAX_SLABS);
+        this.rateLimitedCount = new AtomicLong(0);
+        this.disconnectCounts = new EnumMap<>(DisconnectReason.class);
+        for (final DisconnectReason reason : DisconnectReason.values()) {
+            this.disconnectCounts.put(reason, new AtomicLong(0));
+        }
 
         LOG.info("Checking commands...");
-        this.__loadEnabledCommands();
-        LOG.info("{} command(s) enabled", this.enabledCommands.size());
+        this.commandRegistry = CommandRegistry.getInstance();
+        LOG.info("{} command(s) enabled", this.commandRegistry.size());
 
         LOG.info("Testing SQL database connection...");
         try {
             if (!DBPool.getInstance().isOnline()) {
                 return 1;
             }
+            AccountDirectory.getInstance().start();
         } catch (ExceptionInInitializerError ignore) {
             System.err.println("Bad configuration! Go to https://github.com/0xbaadf00d/psychic-soul/wiki");
             return 1;
@@ -144,7 +221,9 @@ public class NSServer implements NIOEventListener {
         LOG.info("Starting server...");
         this.nioServer = new NIOServer(this, Settings.socketPort, NSServer.SELECT_TIMEOUT);
         this.nioServer.setSocketTTL(Settings.socketTTL);
+        this.nioServer.setSocketIdleNotify(Settings.socketTTL * 750, Settings.socketTTL * 800);
         this.nioServer.setMaxConn(Settings.socketMaxConn);
+        this.nioServer.setWorkerCount(Settings.socketWorkers);
         LOG.info("Ready!");
         this.nioServer.run();
         return 0;
@@ -157,27 +236,63 @@ public class NSServer implements NIOEventListener {
      * @since 1.3.0
      */
     public int getConnectedSessionsCount() {
-        return this.connectedUserSessions.size();
+        return this.sessionRegistry.getSessionCount();
+    }
+
+    /**
+     * Get the pool of buffers used to read from sockets.
+     *
+     * @return The read buffer pool
+     * @since 1.4.0
+     */
+    public BufferPool getReadBufferPool() {
+        return this.readBufferPool;
+    }
+
+    /**
+     * Get the number of sessions closed for the given reason.
+     *
+     * @param reason The disconnection reason
+     * @return The number of closed sessions
+     * @since 1.4.0
+     */
+    public long getDisconnectCount(final DisconnectReason reason) {
+        return this.disconnectCounts.get(reason).get();
+    }
+
+    /**
+     * Get the number of times a session has been paused by its command
+     * rate limit.
+     *
+     * @return The number of rate limited sessions
+     * @since 1.4.0
+     */
+    public long getRateLimitedCount() {
+        return this.rateLimitedCount.get();
     }
 
     /**
      * Called each time a new channel is accepted.
      *
-     * @param selector The event selector
-     * @param socket   The channel socket
+     * @param selector   The event selector
+     * @param connection The channel connection
      * @throws java.io.IOException If IO operation fail (like read/write on socket)
      * @since 1.0.0
      */
     @Override
-    public void onAcceptableEvent(Selector selector, SocketChannel socket) throws IOException {
+    public void onAcceptableEvent(Selector selector, NIOConnection connection) throws IOException {
         final Session usrSess = new Session();
+        final SocketChannel socket = connection.getSocket();
         final long curTimestamp = System.currentTimeMillis() / 1000;
 
+        connection.setAttachment(usrSess);
+        usrSess.setResumeHandler(this::__markReady);
+        usrSess.network.connection = connection;
         usrSess.network.socket = socket;
         usrSess.network.ip = socket.socket().getInetAddress().getHostAddress();
         usrSess.network.port = socket.socket().getPort();
         usrSess.network.address = socket.getRemoteAddress().toString();
-        usrSess.network.fd = socket.hashCode();
+        usrSess.network.fd = connection.getId();
         usrSess.network.selector = selector;
         usrSess.hash = MD5.hash(String.format("%s%d", socket.toString(), curTimestamp));
 
@@ -188,69 +303,71 @@ public class NSServer implements NIOEventListener {
                 usrSess.network.port,
                 curTimestamp));
         usrSess.network.registerWriteEvent();
-        this.connectedUserSessions.put(socket.hashCode(), usrSess);
+        this.readySessions.computeIfAbsent(selector, k -> new ConcurrentLinkedQueue<>());
+        this.sessionRegistry.add(usrSess);
     }
 
     /**
      * Called each time a channel is ready to read.
      *
-     * @param selector The event selector
-     * @param socket   The channel socket
+     * @param selector   The event selector
+     * @param connection The channel connection
      * @return The number of read bytes
      * @throws java.io.IOException If IO operation fail (like read/write on socket)
      * @since 1.0.0
      */
     @Override
-    public int onReadableEvent(Selector selector, SocketChannel socket) throws IOException {
-        final Session usrSess = this.connectedUserSessions.get(socket.hashCode());
-        final ByteBuffer buffer = ByteBuffer.allocate(NSServer.CHUNK_SIZE);
-        int nbRead;
+    public int onReadableEvent(Selector selector, NIOConnection connection) throws IOException {
+        final Session usrSess = (Session) connection.getAttachment();
+        final LineFramer inputBuffer = usrSess.inputBuffer;
+        if (inputBuffer.remainingCapacity() == 0) {
+            usrSess.network.pauseReadEvent();
+            return 0;
+        }
 
-        nbRead = socket.read(buffer);
-        if (nbRead > 0) {
-            buffer.flip();
-            while (buffer.hasRemaining()) {
-                final byte[] tmpBuffer = new byte[nbRead >= NSServer.CHUNK_SIZE ? NSServer.CHUNK_SIZE : nbRead];
-                buffer.get(tmpBuffer);
-                final String tmpBufferCleaned = new String(tmpBuffer, "UTF-8");
-                usrSess.inputBuffer.add(tmpBufferCleaned.replaceAll("\\p{Cc}\\p{Cf}\\p{Co}\\p{Cn}", "?").replace("\r", ""));
+        final ByteBuffer buffer = this.readBufferPool.acquire();
+        int nbRead;
+        try {
+            if (buffer.remaining() > inputBuffer.remainingCapacity()) {
+                buffer.limit(inputBuffer.remainingCapacity());
+            }
+            nbRead = connection.getSocket().read(buffer);
+            if (nbRead > 0) {
+                buffer.flip();
+                inputBuffer.append(buffer);
+                if (inputBuffer.hasLine() || this.__checkInputOverflow(usrSess)) {
+                    this.__markReady(usrSess);
+                }
             }
-            buffer.clear();
+        } finally {
+            this.readBufferPool.release(buffer);
         }
 
         return nbRead;
     }
 
     /**
-     * Called each time a channel is ready to write.
+     * Called each time a channel is ready to write. The answer being
+     * streamed, if any, is written as the output buffer drains.
      *
-     * @param selector The event selector
-     * @param socket   The channel socket
+     * @param selector   The event selector
+     * @param connection The channel connection
      * @return The number of wrote bytes
      * @throws java.io.IOException If IO operation fail (like read/write on socket)
      * @since 1.0.0
      */
     @Override
-    public int onWritableEvent(Selector selector, SocketChannel socket) throws IOException {
-        final Session usrSess = this.connectedUserSessions.get(socket.hashCode());
+    public int onWritableEvent(Selector selector, NIOConnection connection) throws IOException {
+        final Session usrSess = (Session) connection.getAttachment();
         int nbByteWritten = 0;
-        try {
-            if (!usrSess.outputBuffer.isEmpty()) {
-                final String data = usrSess.outputBuffer.remove(0);
-                final int dataSize = data.length();
-                nbByteWritten = socket.write(ByteBuffer.wrap(data.getBytes()));
-                if (nbByteWritten != dataSize) {
-                    usrSess.outputBuffer.add(0, data.substring(nbByteWritten));
-                    throw new RuntimeException("Data partially sent");
-                }
-            }
-            if (usrSess.outputBuffer.isEmpty()) {
+        synchronized (usrSess) {
+            nbByteWritten = usrSess.outputBuffer.writeTo(connection.getSocket(), Settings.socketWriteBudget);
+            if (!usrSess.pumpOutput()) {
                 usrSess.network.unregisterWriteEvent();
             }
-        } catch (RuntimeException ignore) {
         }
-        if (usrSess.disconnectReason != null && usrSess.network.socket != null && usrSess.outputBuffer.size() == 0) {
-            this.nioServer.addToDisconnect(usrSess.network.socket, usrSess.disconnectReason);
+        if (usrSess.disconnectReason != null && !usrSess.hasPendingOutput()) {
+            this.nioServer.addToDisconnect(connection, usrSess.disconnectReason);
         }
         return nbByteWritten;
     }
@@ -269,7 +386,12 @@ public class NSServer implements NIOEventListener {
 
     /**
      * Called each time after all selectors are processed (only when select()
-     * returned value is superior to 0).
+     * returned value is superior to 0). Only sessions from the ready queue
+     * are processed. All complete lines buffered for a session are executed,
+     * up to {@code Settings.socketCommandBudget} commands per session;
+     * remaining lines are handled right away on the next loop. A session
+     * which spent all its command tokens is suspended until its bucket
+     * has been refilled.
      *
      * @param selector The event selector
      * @throws java.io.IOException If IO operation fail (like read/write on socket)
@@ -277,92 +399,155 @@ public class NSServer implements NIOEventListener {
      */
     @Override
     public void onFinalize(Selector selector) throws IOException {
-        final Instant currentInstant = Instant.now();
-        for (Session usrSess : this.connectedUserSessions.values()) {
-            final String[] payload = usrSess.getNextPayload();
-            if (payload != null) {
-                if (LOG.isTraceEnabled()) {
-                    String methodName = payload[0];
-                    if (payload.length > 1 && (methodName.compareTo("user_cmd") == 0 || methodName.compareTo("cmd") == 0)) {
-                        methodName += String.format("::%s", payload[1]);
-                    }
-                    LOG.trace("Client from {} call the method \"{}\"",
-                            String.format("%s (%s)",
-                                    usrSess.network.address,
-                                    (usrSess.user.login == null) ? "<not_authenticated>" : usrSess.user.login),
-                            methodName);
-                }
-                final Command cmd = this.enabledCommands.get(payload[0]);
-                if (cmd != null) {
-                    if (cmd.canExecute(usrSess)) {
-                        final int minArgs = cmd.getMinimalArgsCountNeeded();
-                        final int maxArgs = cmd.getMaximalArgsCountNeeded();
-                        if (payload.length >= minArgs && (maxArgs == -1 || payload.length <= maxArgs)) {
-                            try {
-                                cmd.execute(payload, usrSess, this.connectedUserSessions.values(), this.globalFollowers);
-                            } catch (Exception e) {
-                                LOG.error("Something goes wrong during the command execution!", e);
-                                usrSess.addOutputDataAsChunk("rep 500 -- internal error\n");
-                            }
-                        } else {
-                            if (minArgs == maxArgs) {
-                                usrSess.addOutputDataAsChunk(String.format("rep 003 -- cmd bad number of arguments %d should be %d\n", payload.length, minArgs));
-                            } else if (maxArgs == -1) {
-                                usrSess.addOutputDataAsChunk(String.format("rep 003 -- cmd bad number of arguments %d should be at least %d\n", payload.length, minArgs));
-                            } else {
-                                usrSess.addOutputDataAsChunk(String.format("rep 003 -- cmd bad number of arguments %d should be between %d and %d\n", payload.length, minArgs, maxArgs));
-                            }
-                        }
-                    } else {
-                        if (cmd.getType() == Command.CmdType.AUTHENTICATION) {
-                            usrSess.addOutputDataAsChunk("rep 008 -- agent already log\n");
-                        } else {
-                            usrSess.addOutputDataAsChunk("rep 403 -- forbidden\n");
-                        }
+        final Queue<Session> readyQueue = this.readySessions.get(selector);
+        if (readyQueue == null) {
+            return;
+        }
+        final Payload payload = this.workerPayload.get();
+        Session firstRequeued = null;
+        Session usrSess;
+        while ((usrSess = readyQueue.poll()) != null) {
+            usrSess.isQueued.set(false);
+            this.readySessionCount.decrementAndGet();
+            if (usrSess == firstRequeued) {
+                this.__markReady(usrSess);
+                break;
+            }
+            if (!usrSess.network.socket.isOpen()) {
+                continue;
+            }
+            int budget = Settings.socketCommandBudget;
+            boolean hasExecuted = false;
+            while (budget > 0 && usrSess.disconnectReason == null && !usrSess.isSuspended() && usrSess.commandBucket.hasTokens() && this.__nextPayload(usrSess, payload)) {
+                this.__executePayload(usrSess, payload);
+                hasExecuted = true;
+                budget -= 1;
+            }
+            if (usrSess.disconnectReason == null && !usrSess.isSuspended() && usrSess.inputBuffer.hasLine() && !usrSess.commandBucket.hasTokens()) {
+                usrSess.suspend();
+                usrSess.network.connection.schedule(usrSess::resume, usrSess.commandBucket.getWaitTime());
+                this.rateLimitedCount.incrementAndGet();
+            }
+            if (hasExecuted) {
+                usrSess.network.registerWriteEvent();
+                if (budget == 0 && !usrSess.isSuspended() && usrSess.inputBuffer.hasLine()) {
+                    this.__markReady(usrSess);
+                    if (firstRequeued == null) {
+                        firstRequeued = usrSess;
                     }
-                } else {
-                    usrSess.addOutputDataAsChunk("rep 001 -- no such cmd\n");
+                    selector.wakeup();
                 }
-                usrSess.network.registerWriteEvent();
+            } else if (this.__checkInputOverflow(usrSess)) {
+                continue;
             }
-            if (usrSess.disconnectReason != null && usrSess.network.socket != null && usrSess.outputBuffer.isEmpty()) {
-                this.nioServer.addToDisconnect(usrSess.network.socket, usrSess.disconnectReason);
-            } else {
-                final Instant lastSockActivity = this.nioServer.getInactivityTTL(usrSess.network.socket);
-                if (lastSockActivity != null && currentInstant.isAfter(lastSockActivity.plusMillis(Settings.socketTTL * 750)) && usrSess.lastPingSent.isBefore(currentInstant)) {
-                    usrSess.addOutputDataAsChunk(String.format("ping %d\n", lastSockActivity.plusSeconds(Settings.socketTTL).minusSeconds(currentInstant.getEpochSecond()).getEpochSecond()));
-                    usrSess.network.registerWriteEvent();
-                    usrSess.lastPingSent = currentInstant.plusMillis(Settings.socketTTL * 800);
-                } else if (lastSockActivity == null) {
-                    LOG.warn("Gnarf! Where is the client {}",
-                            String.format("%s (%s)",
-                                    usrSess.network.address,
-                                    (usrSess.user.login == null) ? "<not_authenticated>" : usrSess.user.login),
-                            usrSess.network.socket.hashCode());
-                    this.nioServer.addToDisconnect(usrSess.network.socket, DisconnectReason.NO_ACTIVITY);
-                }
+            if (usrSess.inputBuffer.remainingCapacity() > 0) {
+                usrSess.network.resumeReadEvent();
+            }
+            if (usrSess.disconnectReason != null && !usrSess.hasPendingOutput()) {
+                this.nioServer.addToDisconnect(usrSess.network.connection, usrSess.disconnectReason);
+            }
+        }
+        if (FanoutScheduler.getInstance().run(selector)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Add the session to the ready sessions queue of its selector, if not
+     * already queued.
+     *
+     * @param usrSess The user session
+     * @since 1.4.0
+     */
+    private void __markReady(final Session usrSess) {
+        if (usrSess.isQueued.compareAndSet(false, true)) {
+            this.readySessions.get(usrSess.network.selector).offer(usrSess);
+            this.readySessionCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get the number of sessions waiting to be processed.
+     *
+     * @return The number of ready sessions
+     * @since 1.4.0
+     */
+    public int getReadySessionCount() {
+        return this.readySessionCount.get();
+    }
+
+    /**
+     * Execute the command contained in the given payload.
+     *
+     * @param usrSess The user session who call the command
+     * @param payload The tokenized command line
+     * @since 1.4.0
+     */
+    private void __executePayload(final Session usrSess, final Payload payload) {
+        if (LOG.isTraceEnabled()) {
+            String methodName = payload.get(0);
+            if (payload.size() > 1 && (methodName.compareTo("user_cmd") == 0 || methodName.compareTo("cmd") == 0)) {
+                methodName += String.format("::%s", payload.get(1));
             }
+            LOG.trace("Client from {} call the method \"{}\"",
+                    String.format("%s (%s)",
+                            usrSess.network.address,
+                            (usrSess.user.login == null) ? "<not_authenticated>" : usrSess.user.login),
+                    methodName);
+        }
+        final CommandBinding binding = this.commandRegistry.resolve(payload);
+        if (binding != null) {
+            binding.dispatch(payload, usrSess, this.sessionRegistry.getSessions(), this.presenceRegistry);
+        } else {
+            usrSess.addOutputDataAsChunk("rep 001 -- no such cmd\n");
+        }
+    }
+
+    /**
+     * Called when no activity has been detected on the channel during the
+     * configured inactivity delay. Send a ping to the client.
+     *
+     * @param selector     The event selector
+     * @param connection   The channel connection
+     * @param lastActivity The {@code Instant} of the last activity
+     * @throws java.io.IOException If IO operation fail (like read/write on socket)
+     * @since 1.4.0
+     */
+    @Override
+    public void onIdleEvent(Selector selector, NIOConnection connection, Instant lastActivity) throws IOException {
+        final Session usrSess = (Session) connection.getAttachment();
+        if (usrSess != null && usrSess.disconnectReason == null) {
+            final Instant currentInstant = Instant.now();
+            usrSess.addOutputDataAsChunk(String.format("ping %d\n", lastActivity.plusSeconds(Settings.socketTTL).minusSeconds(currentInstant.getEpochSecond()).getEpochSecond()));
+            usrSess.network.registerWriteEvent();
+            usrSess.lastPingSent = currentInstant;
         }
     }
 
     /**
      * Called when socket channel will be closed.
      *
-     * @param socket      The socket channel
+     * @param connection  The channel connection
      * @param discoReason The disconnection reason
      * @throws java.io.IOException If IO operation fail (like read/write on socket)
      * @since 1.0.0
      */
     @Override
-    public void onDisconnected(SocketChannel socket, DisconnectReason discoReason) throws IOException {
-        final Session usrSess = this.connectedUserSessions.get(socket.hashCode());
+    public void onDisconnected(NIOConnection connection, DisconnectReason discoReason) throws IOException {
+        final Session usrSess = (Session) connection.getAttachment();
+        if (discoReason != null) {
+            this.disconnectCounts.get(discoReason).incrementAndGet();
+        }
         if (usrSess != null && usrSess.user.login != null) {
-            Command cmdState = this.enabledCommands.get("state");
+            Command cmdState = this.commandRegistry.get("state");
             if (cmdState != null) {
-                cmdState.execute((String[]) Arrays.asList("logout", "offline").toArray(), usrSess, this.connectedUserSessions.values(), this.globalFollowers);
+                cmdState.execute(Payload.of("logout", "offline"), usrSess, this.sessionRegistry.getSessions(), this.presenceRegistry);
             }
-            this.globalFollowers.values().stream().forEach(gf -> gf.remove(usrSess));
         }
-        this.connectedUserSessions.remove(socket.hashCode());
+        if (usrSess != null) {
+            this.presenceRegistry.unwatchAll(usrSess);
+            this.sessionRegistry.remove(usrSess);
+            usrSess.close();
+        }
     }
 }
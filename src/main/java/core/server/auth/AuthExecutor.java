@@ -0,0 +1,131 @@
+package core.server.auth;
+
+import core.Settings;
+import core.server.session.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Bounded pool of threads running the blocking part of the authentication
+ * (database, KDC) outside of the NIO workers. The result is handed back
+ * to the worker owning the session, which stays suspended meanwhile.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class AuthExecutor {
+
+    /**
+     * Logger.
+     *
+     * @since 1.4.0
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(AuthExecutor.class.getName());
+
+    /**
+     * The thread pool.
+     *
+     * @since 1.4.0
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Default constructor.
+     *
+     * @since 1.4.0
+     */
+    private AuthExecutor() {
+        final AtomicInteger threadNumber = new AtomicInteger(0);
+        final int nbThreads = Math.max(1, Settings.authWorkers);
+        this.executor = new ThreadPoolExecutor(nbThreads, nbThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, Settings.authQueueSize)),
+                r -> {
+                    final Thread thread = new Thread(r, String.format("auth-worker-%d", threadNumber.getAndIncrement()));
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Get the instance of {@code AuthExecutor}.
+     *
+     * @return The instance of {@code AuthExecutor}
+     * @since 1.4.0
+     */
+    public static AuthExecutor getInstance() {
+        return AuthExecutorSingletonHolder.instance;
+    }
+
+    /**
+     * Run the given task on the authentication pool. The session is
+     * suspended until {@code onComplete} has been called by the worker
+     * owning the session. If the session has been disconnected meanwhile,
+     * {@code onComplete} is not called.
+     *
+     * @param usrSession The user session to authenticate
+     * @param task       The blocking task, a failure is reported as {@code null}
+     * @param onComplete Called by the session worker with the task result
+     * @param <T>        The result type
+     * @return {@code true} if the task has been accepted, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public <T> boolean submit(final Session usrSession, final Callable<T> task, final Consumer<T> onComplete) {
+        usrSession.suspend();
+        try {
+            this.executor.execute(() -> {
+                T result = null;
+                try {
+                    result = task.call();
+                } catch (Exception e) {
+                    LOG.warn("Something goes wrong during the authentication!", e);
+                }
+                final T taskResult = result;
+                usrSession.network.connection.post(() -> {
+                    try {
+                        if (usrSession.network.socket.isOpen()) {
+                            onComplete.accept(taskResult);
+                            usrSession.network.registerWriteEvent();
+                        }
+                    } finally {
+                        usrSession.resume();
+                    }
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Authentication queue is full");
+            usrSession.resume();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of authentication requests waiting for a thread.
+     *
+     * @return The number of waiting requests
+     * @since 1.4.0
+     */
+    public int getQueueSize() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * AuthExecutor singleton Holder.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static class AuthExecutorSingletonHolder {
+        private final static AuthExecutor instance = new AuthExecutor();
+    }
+}
@@ -0,0 +1,266 @@
+package core.server.auth;
+
+import core.Settings;
+import org.ietf.jgss.GSSContext;
+import org.ietf.jgss.GSSCredential;
+import org.ietf.jgss.GSSException;
+import org.ietf.jgss.GSSManager;
+import org.ietf.jgss.Oid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.PasswordCallback;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Date;
+
+/**
+ * Kerberos 5 acceptor of the server. The service {@code Subject} and its
+ * acceptor {@code GSSCredential} are obtained once from the KDC (or from
+ * the keytab configured in the JAAS file) and reused to verify every
+ * ticket. They are renewed {@code Settings.krb5RenewMargin} seconds before
+ * they expire, so the KDC is only contacted when the credential rolls over.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class KerberosAcceptor {
+
+    /**
+     * Logger.
+     *
+     * @since 1.4.0
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(KerberosAcceptor.class.getName());
+
+    /**
+     * Name of the JAAS configuration entry.
+     *
+     * @since 1.4.0
+     */
+    private static final String JAAS_ENTRY_NAME = "Server";
+
+    /**
+     * Delay in milliseconds before trying to login again after a failure.
+     *
+     * @since 1.4.0
+     */
+    private static final long LOGIN_RETRY_DELAY = 10000;
+
+    /**
+     * The logged in service subject.
+     *
+     * @since 1.4.0
+     */
+    private Subject subject;
+
+    /**
+     * The acceptor credential of the service.
+     *
+     * @since 1.4.0
+     */
+    private GSSCredential credential;
+
+    /**
+     * Time in milliseconds after which the credential must be renewed.
+     *
+     * @since 1.4.0
+     */
+    private long renewAfter;
+
+    /**
+     * Default constructor.
+     *
+     * @since 1.4.0
+     */
+    private KerberosAcceptor() {
+        this.renewAfter = 0;
+    }
+
+    /**
+     * Get the instance of {@code KerberosAcceptor}.
+     *
+     * @return The instance of {@code KerberosAcceptor}
+     * @since 1.4.0
+     */
+    public static KerberosAcceptor getInstance() {
+        return KerberosAcceptorSingletonHolder.instance;
+    }
+
+    /**
+     * Login against the KDC and create the acceptor credential.
+     *
+     * @throws LoginException            If the login fail
+     * @throws PrivilegedActionException If the credential can't be created
+     * @throws GSSException              If the credential lifetime can't be read
+     * @since 1.4.0
+     */
+    private void __login() throws LoginException, PrivilegedActionException, GSSException {
+        final LoginContext loginCtx = new LoginContext(KerberosAcceptor.JAAS_ENTRY_NAME, new LoginCallbackHandler(Settings.krb5Password));
+        loginCtx.login();
+        final Subject newSubject = loginCtx.getSubject();
+        final GSSCredential newCredential = Subject.doAs(newSubject, (PrivilegedExceptionAction<GSSCredential>) () -> {
+            final Oid mechanism = Settings.krb5Oid != null ? new Oid(Settings.krb5Oid) : null;
+            return GSSManager.getInstance().createCredential(null, GSSCredential.INDEFINITE_LIFETIME, mechanism, GSSCredential.ACCEPT_ONLY);
+        });
+        long expireAt = Long.MAX_VALUE;
+        for (final KerberosTicket ticket : newSubject.getPrivateCredentials(KerberosTicket.class)) {
+            final Date endTime = ticket.getEndTime();
+            if (endTime != null && endTime.getTime() < expireAt) {
+                expireAt = endTime.getTime();
+            }
+        }
+        final int remainingLifetime = newCredential.getRemainingLifetime();
+        if (remainingLifetime != GSSCredential.INDEFINITE_LIFETIME) {
+            expireAt = Math.min(expireAt, System.currentTimeMillis() + remainingLifetime * 1000L);
+        }
+        this.subject = newSubject;
+        this.credential = newCredential;
+        this.renewAfter = expireAt == Long.MAX_VALUE ? Long.MAX_VALUE : expireAt - Settings.krb5RenewMargin * 1000L;
+        LOG.info("Kerberos acceptor credential obtained for {}", newCredential.getName());
+    }
+
+    /**
+     * Get the subject holding a valid acceptor credential, login again
+     * against the KDC if the current one is about to expire. On failure,
+     * the current credential is kept while it is still valid.
+     *
+     * @return The service subject, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    private synchronized Subject __getValidSubject() {
+        if (System.currentTimeMillis() >= this.renewAfter) {
+            try {
+                this.__login();
+            } catch (LoginException | PrivilegedActionException | GSSException e) {
+                LOG.error("Can't authenticate against the KDC", e);
+                this.renewAfter = System.currentTimeMillis() + KerberosAcceptor.LOGIN_RETRY_DELAY;
+                if (!this.__isCredentialUsable()) {
+                    this.subject = null;
+                    this.credential = null;
+                }
+            }
+        }
+        return this.subject;
+    }
+
+    /**
+     * Check if the current credential can still be used, even if it should
+     * have been renewed.
+     *
+     * @return {@code true} if the credential is still valid, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    private boolean __isCredentialUsable() {
+        if (this.subject == null || this.credential == null) {
+            return false;
+        }
+        try {
+            return this.credential.getRemainingLifetime() > 0;
+        } catch (GSSException ignore) {
+            return false;
+        }
+    }
+
+    /**
+     * Drop the cached credential. The next verification will login again
+     * against the KDC.
+     *
+     * @since 1.4.0
+     */
+    public synchronized void invalidate() {
+        this.renewAfter = 0;
+    }
+
+    /**
+     * Verify a kerberos ticket and return the owner username. This method
+     * is blocking when the credential has to be renewed and must not be
+     * called from a NIO worker.
+     *
+     * @param krbTicket The kerberos ticket to verify
+     * @return The ticket's owner username, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    public String verify(final byte[] krbTicket) {
+        final Subject serviceSubject;
+        final GSSCredential serviceCredential;
+        synchronized (this) {
+            serviceSubject = this.__getValidSubject();
+            serviceCredential = this.credential;
+        }
+        if (serviceSubject == null) {
+            return null;
+        }
+        try {
+            return Subject.doAs(serviceSubject, (PrivilegedExceptionAction<String>) () -> {
+                final GSSContext context = GSSManager.getInstance().createContext(serviceCredential);
+                try {
+                    context.acceptSecContext(krbTicket, 0, krbTicket.length);
+                    return context.getSrcName().toString();
+                } finally {
+                    context.dispose();
+                }
+            });
+        } catch (PrivilegedActionException e) {
+            LOG.debug("Can't verify the kerberos ticket", e.getException());
+            if (e.getException() instanceof GSSException) {
+                final int major = ((GSSException) e.getException()).getMajor();
+                if (major == GSSException.NO_CRED || major == GSSException.CREDENTIALS_EXPIRED || major == GSSException.DEFECTIVE_CREDENTIAL) {
+                    this.invalidate();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * KerberosAcceptor singleton Holder.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static class KerberosAcceptorSingletonHolder {
+        private final static KerberosAcceptor instance = new KerberosAcceptor();
+    }
+
+    /**
+     * Password callback handler for resolving password/usernames
+     * for a JAAS login.
+     *
+     * @author Thibault Meyer
+     * @version 1.2.0
+     * @since 1.2.0
+     */
+    private static class LoginCallbackHandler implements CallbackHandler {
+
+        private final String password;
+
+        public LoginCallbackHandler(String password) {
+            super();
+            this.password = password;
+        }
+
+        /**
+         * Handles the callbacks, and sets the password detail.
+         *
+         * @param callbacks The callbacks to handle
+         * @since 1.2.0
+         */
+        public void handle(Callback[] callbacks) {
+            for (Callback callback : callbacks) {
+                if (callback instanceof PasswordCallback && password != null) {
+                    PasswordCallback pc = (PasswordCallback) callback;
+                    pc.setPassword(password.toCharArray());
+                }
+            }
+        }
+    }
+}
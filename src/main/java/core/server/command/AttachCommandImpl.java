@@ -1,11 +1,10 @@
 package core.server.command;
 
+import core.server.session.PresenceRegistry;
 import core.server.session.Session;
 import core.server.session.SessionStageLevel;
 
 import java.util.Collection;
-import java.util.List;
-import java.util.Map;
 
 /**
  * Attach give access to some IONIS internal daemons (ie: newsgroup, ...).
@@ -14,7 +13,7 @@ import java.util.Map;
  * </pre>
  *
  * @author Thibault Meyer
- * @version 1.1.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public class AttachCommandImpl implements Command {
@@ -72,12 +71,12 @@ public class AttachCommandImpl implements Command {
      * @param payload           The command arguments
      * @param usrSession        The user session who call this command
      * @param connectedSessions The collection of connected sessions
-     * @param globalFollowers   The map of all followers
+     * @param presenceRegistry  The registry of followers
      * @throws IndexOutOfBoundsException if payload don't contain enough arguments
      * @since 1.0.0
      */
     @Override
-    public void execute(final String[] payload, final Session usrSession, final Collection<Session> connectedSessions, final Map<String, List<Session>> globalFollowers) throws ArrayIndexOutOfBoundsException {
+    public void execute(final Payload payload, final Session usrSession, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) throws ArrayIndexOutOfBoundsException {
         usrSession.addOutputDataAsChunk("rep 002 -- cmd end\n");
     }
 }
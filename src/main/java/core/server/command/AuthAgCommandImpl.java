@@ -1,12 +1,11 @@
 package core.server.command;
 
+import core.server.session.PresenceRegistry;
 import core.server.session.Session;
 import core.server.session.SessionAuthType;
 import core.server.session.SessionStageLevel;
 
 import java.util.Collection;
-import java.util.List;
-import java.util.Map;
 
 /**
  * Select the authentication agent to use.
@@ -18,7 +17,7 @@ import java.util.Map;
  * </pre>
  *
  * @author Thibault Meyer
- * @version 1.1.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public class AuthAgCommandImpl implements Command {
@@ -76,24 +75,26 @@ public class AuthAgCommandImpl implements Command {
      * @param payload           The command arguments
      * @param usrSession        The user session who call this command
      * @param connectedSessions The collection of connected sessions
-     * @param globalFollowers   The map of all followers
+     * @param presenceRegistry  The registry of followers
      * @throws IndexOutOfBoundsException if payload don't contain enough arguments
      * @since 1.0.0
      */
     @Override
-    public void execute(final String[] payload, final Session usrSession, final Collection<Session> connectedSessions, final Map<String, List<Session>> globalFollowers) throws ArrayIndexOutOfBoundsException {
-        if (payload[1].compareTo("ext_user") == 0) {
+    public void execute(final Payload payload, final Session usrSession, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) throws ArrayIndexOutOfBoundsException {
+        if (payload.equalsAt(1, "ext_user")) {
             usrSession.stageLevel = SessionStageLevel.AUTHENTICATION_REQUESTED;
             usrSession.authType = SessionAuthType.EXTERNAL_AUTHENTICATION;
             usrSession.user.trustLevelClient = 3;
             usrSession.user.trustLevelUser = 1;
+            usrSession.invalidateDescriptor();
             usrSession.addOutputDataAsChunk("rep 002 -- cmd end\n");
-        } else if (payload[1].compareTo("user") == 0) {
-            if (payload[2].compareTo("none") != 0) {
+        } else if (payload.equalsAt(1, "user")) {
+            if (!payload.equalsAt(2, "none")) {
                 usrSession.stageLevel = SessionStageLevel.AUTHENTICATION_REQUESTED;
                 usrSession.authType = SessionAuthType.INTERNAL_AUTHENTICATION;
                 usrSession.user.trustLevelClient = 1;
                 usrSession.user.trustLevelUser = 3;
+                usrSession.invalidateDescriptor();
                 usrSession.addOutputDataAsChunk("rep 002 -- cmd end\n");
             } else {
                 usrSession.addOutputDataAsChunk("rep 005 -- no such auth\n");
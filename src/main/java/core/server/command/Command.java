@@ -1,17 +1,16 @@
 package core.server.command;
 
+import core.server.session.PresenceRegistry;
 import core.server.session.Session;
 
 import java.util.Collection;
-import java.util.List;
-import java.util.Map;
 
 /**
  * {@code Command} interface describe methods that each commands
  * implementation must have.
  *
  * @author Thibault Meyer
- * @version 1.1.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public interface Command {
@@ -52,18 +51,56 @@ public interface Command {
      */
     boolean canExecute(final Session usrSession);
 
+    /**
+     * Check if this command is expensive to execute. Expensive commands
+     * are rejected while the server is shedding.
+     *
+     * @return {@code true} if the command is expensive, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    default boolean isExpensive() {
+        return false;
+    }
+
+    /**
+     * Check if this command completes asynchronously, after {@code execute}
+     * has returned. The latency of asynchronous commands is not recorded.
+     *
+     * @return {@code true} if the command is asynchronous, otherwise, {@code false}
+     * @see CommandStatistics
+     * @since 1.4.0
+     */
+    default boolean isAsynchronous() {
+        return false;
+    }
+
+    /**
+     * Get the number of items (logins or sessions) the command will work
+     * on, used to charge the per item cost of the command.
+     *
+     * @param payload           The command arguments
+     * @param connectedSessions The collection of connected sessions
+     * @return The number of items
+     * @see CommandCosts
+     * @since 1.4.0
+     */
+    default int getItemCount(final Payload payload, final Collection<Session> connectedSessions) {
+        return 0;
+    }
+
     /**
      * Execute the command. The first entry (0) of the payload always
-     * contain the command OpCode.
+     * contain the command OpCode. The payload is only valid during the
+     * call, use {@code Payload.copy} to keep it.
      *
      * @param payload           The command arguments
      * @param usrSession        The user session who call this command
      * @param connectedSessions The collection of connected sessions
-     * @param globalFollowers   The map of all followers
+     * @param presenceRegistry  The registry of followers
      * @throws IndexOutOfBoundsException if payload don't contain enough arguments
      * @since 1.0.0
      */
-    void execute(final String[] payload, final Session usrSession, final Collection<Session> connectedSessions, final Map<String, List<Session>> globalFollowers) throws ArrayIndexOutOfBoundsException;
+    void execute(final Payload payload, final Session usrSession, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) throws ArrayIndexOutOfBoundsException;
 
     /**
      * Possible types of command.
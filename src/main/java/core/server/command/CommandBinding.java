@@ -0,0 +1,147 @@
+package core.server.command;
+
+import core.server.session.OutputBudget;
+import core.server.session.PresenceRegistry;
+import core.server.session.Session;
+import core.server.toolbox.LatencyHistogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+
+/**
+ * A command bound to one of its OpCodes. Everything the dispatcher needs
+ * about the OpCode is resolved once, when the enabled commands are
+ * loaded, so dispatching a command does not have to decode its OpCode.
+ * The binding also holds the dispatch policy shared by all entry points:
+ * permission and arguments checks, load shedding, rate limiting and
+ * latency recording.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @see OpcodeTable
+ * @since 1.4.0
+ */
+public final class CommandBinding {
+
+    /**
+     * Logger.
+     *
+     * @since 1.4.0
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(CommandBinding.class.getName());
+
+    /**
+     * The OpCode.
+     *
+     * @since 1.4.0
+     */
+    public final String opcode;
+
+    /**
+     * The command bound to the OpCode.
+     *
+     * @since 1.4.0
+     */
+    public final Command command;
+
+    /**
+     * Base cost of the command in tokens.
+     *
+     * @since 1.4.0
+     */
+    private final double cost;
+
+    /**
+     * Per item cost of the command in tokens.
+     *
+     * @since 1.4.0
+     */
+    private final double itemCost;
+
+    /**
+     * Execution latency of the OpCode, {@code null} for asynchronous
+     * commands.
+     *
+     * @since 1.4.0
+     */
+    private final LatencyHistogram histogram;
+
+    /**
+     * Build a new binding.
+     *
+     * @param opcode  The OpCode
+     * @param command The command bound to the OpCode
+     * @since 1.4.0
+     */
+    CommandBinding(final String opcode, final Command command) {
+        this.opcode = opcode;
+        this.command = command;
+        this.cost = CommandCosts.getInstance().getCost(opcode);
+        this.itemCost = CommandCosts.getInstance().getItemCost(opcode);
+        this.histogram = command.isAsynchronous() ? null : CommandStatistics.getInstance().getHistogram(opcode);
+    }
+
+    /**
+     * Check, charge and execute the command. The session receive an error
+     * answer if the command can't be executed by it, has a bad number of
+     * arguments or is shed because the server is busy. Must be called from
+     * the worker owning the session.
+     *
+     * @param payload           The command arguments, the OpCode first
+     * @param usrSession        The user session who call this command
+     * @param connectedSessions The collection of connected sessions
+     * @param presenceRegistry  The registry of followers
+     * @since 1.4.0
+     */
+    public void dispatch(final Payload payload, final Session usrSession, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) {
+        if (!this.command.canExecute(usrSession)) {
+            if (this.command.getType() == Command.CmdType.AUTHENTICATION) {
+                usrSession.addOutputDataAsChunk("rep 008 -- agent already log\n");
+            } else {
+                usrSession.addOutputDataAsChunk("rep 403 -- forbidden\n");
+            }
+            return;
+        }
+        final int minArgs = this.command.getMinimalArgsCountNeeded();
+        final int maxArgs = this.command.getMaximalArgsCountNeeded();
+        final int curArgs = payload.size();
+        if (curArgs < minArgs || (maxArgs != -1 && curArgs > maxArgs)) {
+            if (minArgs == maxArgs) {
+                usrSession.addOutputDataAsChunk(String.format("rep 003 -- cmd bad number of arguments %d should be %d\n", curArgs, minArgs));
+            } else if (maxArgs == -1) {
+                usrSession.addOutputDataAsChunk(String.format("rep 003 -- cmd bad number of arguments %d should be at least %d\n", curArgs, minArgs));
+            } else {
+                usrSession.addOutputDataAsChunk(String.format("rep 003 -- cmd bad number of arguments %d should be between %d and %d\n", curArgs, minArgs, maxArgs));
+            }
+            return;
+        }
+        if (this.command.isExpensive() && OutputBudget.getInstance().rejectExpensive()) {
+            usrSession.addOutputDataAsChunk("rep 503 -- server busy\n");
+            return;
+        }
+        usrSession.commandBucket.consume(this.getCost(this.command.getItemCount(payload, connectedSessions)));
+        final long startTime = System.nanoTime();
+        try {
+            this.command.execute(payload, usrSession, connectedSessions, presenceRegistry);
+        } catch (Exception e) {
+            LOG.error("Something goes wrong during the command execution!", e);
+            usrSession.addOutputDataAsChunk("rep 500 -- internal error\n");
+        }
+        if (this.histogram != null) {
+            this.histogram.record(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Get the cost of the command.
+     *
+     * @param itemCount The number of items the command works on
+     * @return The cost in tokens
+     * @see CommandCosts
+     * @since 1.4.0
+     */
+    public double getCost(final int itemCount) {
+        return this.cost + this.itemCost * itemCount;
+    }
+}
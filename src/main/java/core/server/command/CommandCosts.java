@@ -0,0 +1,170 @@
+package core.server.command;
+
+import core.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Cost, in tokens, of each command. The cost of a command is its base
+ * cost plus its per item cost multiplied by the number of items (logins
+ * or sessions) the command works on. Commands without configured cost
+ * use the {@code default} cost. Costs are resolved once per OpCode when
+ * the enabled commands are loaded.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @see core.server.session.TokenBucket
+ * @since 1.4.0
+ */
+public final class CommandCosts {
+
+    /**
+     * Logger.
+     *
+     * @since 1.4.0
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(CommandCosts.class.getName());
+
+    /**
+     * Name of the cost used by commands without configured cost.
+     *
+     * @since 1.4.0
+     */
+    private static final String DEFAULT_COST_KEY = "default";
+
+    /**
+     * Suffix of the per item costs.
+     *
+     * @since 1.4.0
+     */
+    private static final String PER_ITEM_SUFFIX = ".per_item";
+
+    /**
+     * Base cost of each command.
+     *
+     * @since 1.4.0
+     */
+    private final Map<String, Double> costs;
+
+    /**
+     * Per item cost of each command.
+     *
+     * @since 1.4.0
+     */
+    private final Map<String, Double> itemCosts;
+
+    /**
+     * Cost of the commands without configured cost.
+     *
+     * @since 1.4.0
+     */
+    private double defaultCost;
+
+    /**
+     * Default constructor.
+     *
+     * @since 1.4.0
+     */
+    private CommandCosts() {
+        this.costs = new HashMap<>();
+        this.itemCosts = new HashMap<>();
+        this.defaultCost = 1;
+        this.__loadCosts();
+    }
+
+    /**
+     * Get the instance of {@code CommandCosts}.
+     *
+     * @return The instance of {@code CommandCosts}
+     * @since 1.4.0
+     */
+    public static CommandCosts getInstance() {
+        return CommandCostsSingletonHolder.instance;
+    }
+
+    /**
+     * Load the costs of the commands.
+     *
+     * @since 1.4.0
+     */
+    private void __loadCosts() {
+        InputStream fis = null;
+        try {
+            if (System.getProperty("core.command_costs", null) != null) {
+                URL u = new URL(System.getProperty("core.command_costs"));
+                fis = u.openStream();
+            } else {
+                fis = Settings.class.getResourceAsStream("/command_costs.properties");
+            }
+            Properties properties = new Properties();
+            properties.load(fis);
+
+            for (Map.Entry<Object, Object> e : properties.entrySet()) {
+                final String key = e.getKey().toString();
+                try {
+                    final double cost = Double.valueOf(e.getValue().toString().trim());
+                    if (key.compareTo(CommandCosts.DEFAULT_COST_KEY) == 0) {
+                        this.defaultCost = cost;
+                    } else if (key.endsWith(CommandCosts.PER_ITEM_SUFFIX)) {
+                        this.itemCosts.put(key.substring(0, key.length() - CommandCosts.PER_ITEM_SUFFIX.length()), cost);
+                    } else {
+                        this.costs.put(key, cost);
+                    }
+                } catch (NumberFormatException ex) {
+                    LOG.warn(String.format("Invalid cost for command \"%s\"", key));
+                }
+            }
+            fis.close();
+        } catch (Throwable e) {
+            LOG.error("Can't open command costs file, using default cost for all commands", e);
+            try {
+                if (fis != null) {
+                    fis.close();
+                }
+            } catch (IOException ignore) {
+            }
+        }
+    }
+
+    /**
+     * Get the base cost of the given command.
+     *
+     * @param opcode The command OpCode
+     * @return The cost in tokens
+     * @since 1.4.0
+     */
+    public double getCost(final String opcode) {
+        final Double cost = this.costs.get(opcode);
+        return cost == null ? this.defaultCost : cost;
+    }
+
+    /**
+     * Get the per item cost of the given command.
+     *
+     * @param opcode The command OpCode
+     * @return The cost in tokens
+     * @since 1.4.0
+     */
+    public double getItemCost(final String opcode) {
+        final Double itemCost = this.itemCosts.get(opcode);
+        return itemCost == null ? 0 : itemCost;
+    }
+
+    /**
+     * CommandCosts singleton Holder.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static class CommandCostsSingletonHolder {
+        private final static CommandCosts instance = new CommandCosts();
+    }
+}
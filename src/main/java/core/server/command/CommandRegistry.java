@@ -0,0 +1,221 @@
+package core.server.command;
+
+import core.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Registry of the enabled commands, shared by all dispatchers. Each
+ * command implementation is instantiated once, even if bound to many
+ * OpCodes. The commands can be reloaded at runtime; the new dispatch
+ * table replace the current one atomically, commands being executed
+ * are not affected.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class CommandRegistry {
+
+    /**
+     * Logger.
+     *
+     * @since 1.4.0
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(CommandRegistry.class.getName());
+
+    /**
+     * The current enabled commands.
+     *
+     * @since 1.4.0
+     */
+    private volatile EnabledCommands enabledCommands;
+
+    /**
+     * Default constructor.
+     *
+     * @since 1.4.0
+     */
+    private CommandRegistry() {
+        final Map<String, Command> commands = CommandRegistry.__loadEnabledCommands();
+        this.enabledCommands = new EnabledCommands(commands == null ? Collections.emptyMap() : commands);
+    }
+
+    /**
+     * Get the instance of {@code CommandRegistry}.
+     *
+     * @return The instance of {@code CommandRegistry}
+     * @since 1.4.0
+     */
+    public static CommandRegistry getInstance() {
+        return CommandRegistrySingletonHolder.instance;
+    }
+
+    /**
+     * Load all enabled commands.
+     *
+     * @return The commands indexed by their OpCode, or {@code null} if the commands file can't be read
+     * @since 1.4.0
+     */
+    private static Map<String, Command> __loadEnabledCommands() {
+        InputStream fis = null;
+        try {
+            if (System.getProperty("core.commands", null) != null) {
+                URL u = new URL(System.getProperty("core.commands"));
+                fis = u.openStream();
+            } else {
+                fis = Settings.class.getResourceAsStream("/commands.properties");
+            }
+            Properties properties = new Properties();
+            properties.load(fis);
+            fis.close();
+
+            final Map<String, Command> instances = new HashMap<>();
+            final Map<String, Command> commands = new HashMap<>();
+            for (Map.Entry<Object, Object> e : properties.entrySet()) {
+                final String className = e.getValue().toString().trim();
+                try {
+                    Command cmd = instances.get(className);
+                    if (cmd == null) {
+                        cmd = (Command) Class.forName(className).newInstance();
+                        instances.put(className, cmd);
+                    }
+                    commands.put(e.getKey().toString(), cmd);
+                } catch (LinkageError | ReflectiveOperationException | ClassCastException ex) {
+                    LOG.warn(String.format("Can't load commands \"%s\"", e.getKey()), ex);
+                }
+            }
+            return commands;
+        } catch (Throwable e) {
+            LOG.error("Can't open commands file", e);
+            try {
+                if (fis != null) {
+                    fis.close();
+                }
+            } catch (IOException ignore) {
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reload the enabled commands. The current commands are kept if the
+     * commands file can't be read or does not enable any command.
+     *
+     * @return {@code true} if the commands have been replaced, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public synchronized boolean reload() {
+        final Map<String, Command> commands = CommandRegistry.__loadEnabledCommands();
+        if (commands == null || commands.isEmpty()) {
+            LOG.warn("No command loaded, keeping the current commands");
+            return false;
+        }
+        this.enabledCommands = new EnabledCommands(commands);
+        LOG.info("{} command(s) enabled", commands.size());
+        return true;
+    }
+
+    /**
+     * Get the binding matching the OpCode of the given payload.
+     *
+     * @param payload The tokenized command line
+     * @return The binding, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    public CommandBinding resolve(final Payload payload) {
+        return this.enabledCommands.opcodeTable.get(payload);
+    }
+
+    /**
+     * Get the command bound to the given OpCode.
+     *
+     * @param opcode The command OpCode
+     * @return The command, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    public Command get(final String opcode) {
+        final CommandBinding binding = this.enabledCommands.opcodeTable.get(opcode);
+        return binding == null ? null : binding.command;
+    }
+
+    /**
+     * Get the OpCodes of the enabled commands.
+     *
+     * @return The sorted OpCodes
+     * @since 1.4.0
+     */
+    public Set<String> getOpcodes() {
+        return this.enabledCommands.opcodes;
+    }
+
+    /**
+     * Get the number of enabled commands.
+     *
+     * @return The number of enabled commands
+     * @since 1.4.0
+     */
+    public int size() {
+        return this.enabledCommands.opcodeTable.size();
+    }
+
+    /**
+     * Immutable set of enabled commands, replaced as a whole on reload.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static final class EnabledCommands {
+
+        /**
+         * Dispatch table built from the enabled commands.
+         *
+         * @since 1.4.0
+         */
+        final OpcodeTable opcodeTable;
+
+        /**
+         * The sorted OpCodes of the enabled commands.
+         *
+         * @since 1.4.0
+         */
+        final Set<String> opcodes;
+
+        /**
+         * Build a new set of enabled commands.
+         *
+         * @param commands The commands indexed by their OpCode
+         * @since 1.4.0
+         */
+        EnabledCommands(final Map<String, Command> commands) {
+            final Map<String, CommandBinding> bindings = new HashMap<>();
+            for (final Map.Entry<String, Command> e : commands.entrySet()) {
+                bindings.put(e.getKey(), new CommandBinding(e.getKey(), e.getValue()));
+            }
+            this.opcodeTable = new OpcodeTable(bindings);
+            this.opcodes = Collections.unmodifiableSet(new TreeSet<>(commands.keySet()));
+        }
+    }
+
+    /**
+     * CommandRegistry singleton Holder.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static class CommandRegistrySingletonHolder {
+        private final static CommandRegistry instance = new CommandRegistry();
+    }
+}
@@ -0,0 +1,95 @@
+package core.server.command;
+
+import core.server.toolbox.LatencyHistogram;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Execution latency of the commands, per OpCode. A histogram is created
+ * for each OpCode when its command is bound, so the memory used is bounded
+ * by the number of OpCodes ever enabled. Histograms are never removed,
+ * bindings record into them directly. Asynchronous commands, like
+ * {@code user_log} and {@code user_klog}, are not recorded: their
+ * execution only submits the work to another thread, so the measured
+ * time would not reflect the command latency.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @see LatencyHistogram
+ * @since 1.4.0
+ */
+public final class CommandStatistics {
+
+    /**
+     * Latency histogram of each OpCode.
+     *
+     * @since 1.4.0
+     */
+    private final Map<String, LatencyHistogram> histograms;
+
+    /**
+     * Default constructor.
+     *
+     * @since 1.4.0
+     */
+    private CommandStatistics() {
+        this.histograms = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get the instance of {@code CommandStatistics}.
+     *
+     * @return The instance of {@code CommandStatistics}
+     * @since 1.4.0
+     */
+    public static CommandStatistics getInstance() {
+        return CommandStatisticsSingletonHolder.instance;
+    }
+
+    /**
+     * Get the latency histogram of the given OpCode, created if needed.
+     *
+     * @param opcode The command OpCode
+     * @return The histogram
+     * @see CommandBinding
+     * @since 1.4.0
+     */
+    LatencyHistogram getHistogram(final String opcode) {
+        return this.histograms.computeIfAbsent(opcode, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Get the latency histogram of each OpCode.
+     *
+     * @return The histograms indexed by OpCode
+     * @since 1.4.0
+     */
+    public Map<String, LatencyHistogram> getHistograms() {
+        return Collections.unmodifiableMap(this.histograms);
+    }
+
+    /**
+     * Drop all recorded latencies. Histograms are reset in place so the
+     * bindings keep recording into them.
+     *
+     * @since 1.4.0
+     */
+    public void reset() {
+        for (final LatencyHistogram histogram : this.histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * CommandStatistics singleton Holder.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static class CommandStatisticsSingletonHolder {
+        private final static CommandStatistics instance = new CommandStatistics();
+    }
+}
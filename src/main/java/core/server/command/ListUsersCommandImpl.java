@@ -1,33 +1,29 @@
 package core.server.command;
 
+import core.network.ByteRingBuffer;
+import core.server.session.OutputCursor;
+import core.server.session.PresenceRegistry;
 import core.server.session.Session;
 import core.server.toolbox.ListLoginParser;
 
 import java.util.Collection;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
 
 /**
- * List all registered users.
+ * List all registered users. The list is streamed from a snapshot of the
+ * sessions as the socket drains: the snapshot only holds references to
+ * the sessions, and the rendered output is bounded by
+ * {@code server.socket.write_budget} per step.
  * <pre>
  *     OpCode: list_users
  *     Args  : 1. (OPTIONAL) login or list of login
  * </pre>
  *
  * @author Thibault Meyer
- * @version 1.1.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public class ListUsersCommandImpl implements Command {
 
-    /**
-     * Output format.
-     *
-     * @since 1.0.0
-     */
-    private static final String LIST_USERS_FORMAT = "%d %s %s %d %d %d %d %s %s %s %s:%d %s\n";
-
     /**
      * Get the minimal number of arguments needed. The command OpCode is
      * included in the number of arguments.
@@ -74,6 +70,30 @@ public class ListUsersCommandImpl implements Command {
         return true;
     }
 
+    /**
+     * Check if this command is expensive to execute.
+     *
+     * @return {@code true} if the command is expensive, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    @Override
+    public boolean isExpensive() {
+        return true;
+    }
+
+    /**
+     * Get the number of items the command will work on.
+     *
+     * @param payload           The command arguments
+     * @param connectedSessions The collection of connected sessions
+     * @return The number of requested logins, or the number of connected sessions
+     * @since 1.4.0
+     */
+    @Override
+    public int getItemCount(final Payload payload, final Collection<Session> connectedSessions) {
+        return (payload.size() == 2) ? ListLoginParser.countEntries(payload.get(1)) : connectedSessions.size();
+    }
+
     /**
      * Execute the command. The first entry (0) of the payload always
      * contain the command OpCode.
@@ -81,31 +101,74 @@ public class ListUsersCommandImpl implements Command {
      * @param payload           The command arguments
      * @param usrSession        The user session who call this command
      * @param connectedSessions The collection of connected sessions
-     * @param globalFollowers   The map of all followers
+     * @param presenceRegistry  The registry of followers
      * @throws IndexOutOfBoundsException if payload don't contain enough arguments
      * @since 1.0.0
      */
     @Override
-    public void execute(final String[] payload, final Session usrSession, final Collection<Session> connectedSessions, final Map<String, List<Session>> globalFollowers) throws ArrayIndexOutOfBoundsException {
-        final List<Session> filterSession = (payload.length == 2) ? ListLoginParser.parseToSession(payload[1], connectedSessions) : null;
-        usrSession.addOutputDataAsChunk(connectedSessions.stream()
-                .filter(us -> us.user.login != null)
-                .filter(us -> (filterSession == null) || filterSession.contains(us))
-                .map(us -> String.format(ListUsersCommandImpl.LIST_USERS_FORMAT,
-                        us.network.fd,
-                        us.user.login,
-                        us.network.ip,
-                        us.user.loginTime,
-                        us.user.stateModifiedAt,
-                        us.user.trustLevelClient,
-                        us.user.trustLevelUser,
-                        us.user.operatingSystem,
-                        us.user.location,
-                        us.user.group,
-                        us.user.state,
-                        us.user.stateModifiedAt,
-                        us.user.clientName))
-                .collect(Collectors.toList()));
-        usrSession.addOutputDataAsChunk("rep 002 -- cmd end\n");
+    public void execute(final Payload payload, final Session usrSession, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) throws ArrayIndexOutOfBoundsException {
+        final Collection<Session> sessionsToList = (payload.size() == 2) ? ListLoginParser.parseToSession(payload.get(1), connectedSessions) : connectedSessions;
+        usrSession.streamOutput(new ListUsersCursor(sessionsToList.toArray(new Session[0])));
+    }
+
+    /**
+     * Write the lines of the listed sessions, followed by the end of the
+     * answer.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static final class ListUsersCursor implements OutputCursor {
+
+        /**
+         * The sessions to list.
+         *
+         * @since 1.4.0
+         */
+        private final Session[] sessions;
+
+        /**
+         * Index of the next session to list.
+         *
+         * @since 1.4.0
+         */
+        private int next;
+
+        /**
+         * Build a new cursor.
+         *
+         * @param sessions The sessions to list
+         * @since 1.4.0
+         */
+        ListUsersCursor(final Session[] sessions) {
+            this.sessions = sessions;
+            this.next = 0;
+        }
+
+        /**
+         * Append the lines of the next sessions to the output buffer.
+         *
+         * @param outputBuffer The output buffer to fill
+         * @param limit        The size in bytes up to which the buffer can be filled
+         * @return {@code true} if all sessions have been listed, otherwise, {@code false}
+         * @since 1.4.0
+         */
+        @Override
+        public boolean fill(final ByteRingBuffer outputBuffer, final int limit) {
+            while (this.next < this.sessions.length) {
+                if (outputBuffer.size() >= limit) {
+                    return false;
+                }
+                final Session us = this.sessions[this.next];
+                this.sessions[this.next] = null;
+                this.next += 1;
+                if (us.user.login != null) {
+                    outputBuffer.write(us.getDescriptor().listUsersLine);
+                }
+            }
+            outputBuffer.write("rep 002 -- cmd end\n");
+            return true;
+        }
     }
 }
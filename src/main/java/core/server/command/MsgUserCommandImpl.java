@@ -1,5 +1,6 @@
 package core.server.command;
 
+import core.server.session.PresenceRegistry;
 import core.server.session.Session;
 import core.server.session.SessionAuthType;
 import core.server.session.SessionStageLevel;
@@ -9,7 +10,6 @@ import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Send message.
@@ -21,7 +21,7 @@ import java.util.Map;
  * </pre>
  *
  * @author Thibault Meyer
- * @version 1.1.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public class MsgUserCommandImpl implements Command {
@@ -79,6 +79,19 @@ public class MsgUserCommandImpl implements Command {
         return usrSession.stageLevel == SessionStageLevel.AUTHENTICATED;
     }
 
+    /**
+     * Get the number of items the command will work on.
+     *
+     * @param payload           The command arguments
+     * @param connectedSessions The collection of connected sessions
+     * @return The number of requested logins
+     * @since 1.4.0
+     */
+    @Override
+    public int getItemCount(final Payload payload, final Collection<Session> connectedSessions) {
+        return ListLoginParser.countEntries(payload.get(1));
+    }
+
     /**
      * Execute the command. The first entry (0) of the payload always
      * contain the command OpCode.
@@ -86,44 +99,40 @@ public class MsgUserCommandImpl implements Command {
      * @param payload           The command arguments
      * @param usrSession        The user session who call this command
      * @param connectedSessions The collection of connected sessions
-     * @param globalFollowers   The map of all followers
+     * @param presenceRegistry  The registry of followers
      * @throws IndexOutOfBoundsException if payload don't contain enough arguments
      * @since 1.0.0
      */
     @Override
-    public void execute(final String[] payload, final Session usrSession, final Collection<Session> connectedSessions, final Map<String, List<Session>> globalFollowers) throws ArrayIndexOutOfBoundsException {
-        final List<Session> lstSessDest = ListLoginParser.parseToSession(payload[1], connectedSessions);
-        final String cmdHeader = String.format("%s %d:user:%d/%d:%s@%s:%s:%s:ext",
-                (usrSession.authType == SessionAuthType.EXTERNAL_AUTHENTICATION) ? "user_cmd" : "cmd",
-                usrSession.network.fd,
-                usrSession.user.trustLevelClient,
-                usrSession.user.trustLevelUser,
-                usrSession.user.login,
-                usrSession.network.ip,
-                usrSession.user.operatingSystem,
-                usrSession.user.location);
+    public void execute(final Payload payload, final Session usrSession, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) throws ArrayIndexOutOfBoundsException {
+        final List<Session> lstSessDest = ListLoginParser.parseToSession(payload.get(1), connectedSessions);
+        final String cmdHeader = ((usrSession.authType == SessionAuthType.EXTERNAL_AUTHENTICATION) ? "user_cmd " : "cmd ")
+                + usrSession.getDescriptor().msgHeader;
         for (final Session s : lstSessDest) {
-            if (payload[2].compareToIgnoreCase("msg") == 0 && payload.length >= 3) {
+            if (payload.get(2).compareToIgnoreCase("msg") == 0 && payload.size() >= 3) {
                 if (LOG.isTraceEnabled()) {
                     LOG.trace(String.format("Client from %s (%s) send message to %s (%s): %s",
                             usrSession.network.address,
                             usrSession.user.login,
                             s.network.address,
                             s.user.login,
-                            payload[3]
+                            payload.get(3)
                     ));
                 }
-                final String cmdFormat = String.format("%s | msg %s\n", cmdHeader, payload[3]);
-                s.addOutputDataAsChunk(cmdFormat);
+                final String cmdFormat = String.format("%s | msg %s\n", cmdHeader, payload.get(3));
+                if (s.addMessage(cmdFormat)) {
+                    s.network.registerWriteEvent();
+                }
             } else {
                 String data = "";
-                for (int i = 3; i < payload.length; ++i) {
-                    data = " " + payload[i];
+                for (int i = 3; i < payload.size(); ++i) {
+                    data = " " + payload.get(i);
+                }
+                final String cmdFormat = String.format("%s | %s%s\n", cmdHeader, payload.get(2), data);
+                if (s.addMessage(cmdFormat)) {
+                    s.network.registerWriteEvent();
                 }
-                final String cmdFormat = String.format("%s | %s%s\n", cmdHeader, payload[2], data);
-                s.addOutputDataAsChunk(cmdFormat);
             }
-            s.network.registerWriteEvent();
         }
     }
 }
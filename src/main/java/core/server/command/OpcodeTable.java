@@ -0,0 +1,169 @@
+package core.server.command;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Immutable dispatch table resolving the binding of a command OpCode
+ * directly from the raw bytes of a {@code Payload}. OpCodes are stored
+ * in an open addressing table sized to keep at most one entry out of
+ * four used, so a lookup is a single hash over the bytes followed, most
+ * of the time, by a single comparison.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class OpcodeTable {
+
+    /**
+     * The OpCodes bytes.
+     *
+     * @since 1.4.0
+     */
+    private final byte[][] keys;
+
+    /**
+     * The bindings, at the same index than their OpCode.
+     *
+     * @since 1.4.0
+     */
+    private final CommandBinding[] values;
+
+    /**
+     * Mask used to convert a hash to an index.
+     *
+     * @since 1.4.0
+     */
+    private final int mask;
+
+    /**
+     * The number of commands.
+     *
+     * @since 1.4.0
+     */
+    private final int size;
+
+    /**
+     * Build a new dispatch table.
+     *
+     * @param commands The bindings indexed by their OpCode
+     * @since 1.4.0
+     */
+    public OpcodeTable(final Map<String, CommandBinding> commands) {
+        int capacity = 16;
+        while (capacity < commands.size() * 4) {
+            capacity <<= 1;
+        }
+        this.keys = new byte[capacity][];
+        this.values = new CommandBinding[capacity];
+        this.mask = capacity - 1;
+        this.size = commands.size();
+        for (final Map.Entry<String, CommandBinding> e : commands.entrySet()) {
+            final byte[] key = e.getKey().getBytes(StandardCharsets.UTF_8);
+            int idx = OpcodeTable.__hash(key, 0, key.length) & this.mask;
+            while (this.keys[idx] != null) {
+                idx = (idx + 1) & this.mask;
+            }
+            this.keys[idx] = key;
+            this.values[idx] = e.getValue();
+        }
+    }
+
+    /**
+     * FNV-1a hash of the given bytes.
+     *
+     * @param data   The array
+     * @param offset The start offset
+     * @param length The number of bytes
+     * @return The hash
+     * @since 1.4.0
+     */
+    private static int __hash(final byte[] data, final int offset, final int length) {
+        int hash = 0x811C9DC5;
+        for (int i = offset; i < offset + length; ++i) {
+            hash ^= data[i];
+            hash *= 0x01000193;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Get the binding matching the given OpCode bytes.
+     *
+     * @param data   The array holding the OpCode
+     * @param offset The start offset
+     * @param length The number of bytes
+     * @return The binding, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    public CommandBinding get(final byte[] data, final int offset, final int length) {
+        int idx = OpcodeTable.__hash(data, offset, length) & this.mask;
+        byte[] key;
+        while ((key = this.keys[idx]) != null) {
+            if (key.length == length && OpcodeTable.__equals(key, data, offset)) {
+                return this.values[idx];
+            }
+            idx = (idx + 1) & this.mask;
+        }
+        return null;
+    }
+
+    /**
+     * Get the binding matching the OpCode of the given payload.
+     *
+     * @param payload The payload
+     * @return The binding, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    public CommandBinding get(final Payload payload) {
+        if (payload.size() == 0) {
+            return null;
+        }
+        if (payload.array() == null) {
+            final byte[] opcode = payload.get(0).getBytes(StandardCharsets.UTF_8);
+            return this.get(opcode, 0, opcode.length);
+        }
+        return this.get(payload.array(), payload.start(0), payload.length(0));
+    }
+
+    /**
+     * Get the binding matching the given OpCode.
+     *
+     * @param opcode The OpCode
+     * @return The binding, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    public CommandBinding get(final String opcode) {
+        final byte[] raw = opcode.getBytes(StandardCharsets.UTF_8);
+        return this.get(raw, 0, raw.length);
+    }
+
+    /**
+     * Compare the key with the given bytes.
+     *
+     * @param key    The key
+     * @param data   The array to compare with
+     * @param offset The start offset in {@code data}
+     * @return {@code true} if equal, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    private static boolean __equals(final byte[] key, final byte[] data, final int offset) {
+        for (int i = 0; i < key.length; ++i) {
+            if (key[i] != data[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the number of commands.
+     *
+     * @return The number of commands
+     * @since 1.4.0
+     */
+    public int size() {
+        return this.size;
+    }
+}
@@ -0,0 +1,309 @@
+package core.server.command;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Tokenized command line. Arguments are stored as offsets over the
+ * received line bytes and only decoded as {@code String} when requested
+ * with {@code get}. The first entry (0) always contain the command OpCode.
+ * A tokenized payload is only valid during the command execution; use
+ * {@code copy} to keep it longer.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class Payload {
+
+    /**
+     * Initial number of arguments slots.
+     *
+     * @since 1.4.0
+     */
+    private static final int INITIAL_ARGS = 8;
+
+    /**
+     * The bytes of the command line.
+     *
+     * @since 1.4.0
+     */
+    private byte[] data;
+
+    /**
+     * Start offset of each argument.
+     *
+     * @since 1.4.0
+     */
+    private int[] starts;
+
+    /**
+     * End offset (exclusive) of each argument.
+     *
+     * @since 1.4.0
+     */
+    private int[] ends;
+
+    /**
+     * Decoded arguments cache.
+     *
+     * @since 1.4.0
+     */
+    private String[] strings;
+
+    /**
+     * Index of the first visible argument.
+     *
+     * @since 1.4.0
+     */
+    private int first;
+
+    /**
+     * Total number of arguments.
+     *
+     * @since 1.4.0
+     */
+    private int count;
+
+    /**
+     * Reusable view used by {@code shift}.
+     *
+     * @since 1.4.0
+     */
+    private Payload shifted;
+
+    /**
+     * Build an empty payload.
+     *
+     * @since 1.4.0
+     */
+    public Payload() {
+        this.starts = new int[Payload.INITIAL_ARGS];
+        this.ends = new int[Payload.INITIAL_ARGS];
+        this.strings = new String[Payload.INITIAL_ARGS];
+        this.first = 0;
+        this.count = 0;
+    }
+
+    /**
+     * Build a payload from already decoded arguments.
+     *
+     * @param args The arguments, the first one is the command OpCode
+     * @return The payload
+     * @since 1.4.0
+     */
+    public static Payload of(final String... args) {
+        final Payload payload = new Payload();
+        payload.__ensureCapacity(args.length);
+        for (int i = 0; i < args.length; ++i) {
+            payload.starts[i] = 0;
+            payload.ends[i] = 0;
+            payload.strings[i] = args[i];
+        }
+        payload.data = null;
+        payload.count = args.length;
+        return payload;
+    }
+
+    /**
+     * Check if the given byte is a separator.
+     *
+     * @param b The byte to check
+     * @return {@code true} if the byte is a whitespace, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    private static boolean __isSeparator(final byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+
+    /**
+     * Make sure {@code capacity} arguments can be stored.
+     *
+     * @param capacity The number of arguments
+     * @since 1.4.0
+     */
+    private void __ensureCapacity(final int capacity) {
+        if (capacity > this.starts.length) {
+            final int newCapacity = Math.max(capacity, this.starts.length * 2);
+            this.starts = Arrays.copyOf(this.starts, newCapacity);
+            this.ends = Arrays.copyOf(this.ends, newCapacity);
+            this.strings = Arrays.copyOf(this.strings, newCapacity);
+        }
+    }
+
+    /**
+     * Split the given line on whitespaces. Leading and trailing control
+     * characters are ignored. The line bytes are not copied.
+     *
+     * @param line   The array holding the line
+     * @param offset The start of the line
+     * @param length The length of the line
+     * @since 1.4.0
+     */
+    public void tokenize(final byte[] line, final int offset, final int length) {
+        int end = offset + length;
+        int pos = offset;
+        while (pos < end && (line[pos] & 0xFF) <= ' ') {
+            pos += 1;
+        }
+        while (end > pos && (line[end - 1] & 0xFF) <= ' ') {
+            end -= 1;
+        }
+        Arrays.fill(this.strings, 0, this.count, null);
+        this.data = line;
+        this.first = 0;
+        this.count = 0;
+        while (pos < end) {
+            final int argStart = pos;
+            while (pos < end && !Payload.__isSeparator(line[pos])) {
+                pos += 1;
+            }
+            this.__ensureCapacity(this.count + 1);
+            this.starts[this.count] = argStart;
+            this.ends[this.count] = pos;
+            this.count += 1;
+            while (pos < end && Payload.__isSeparator(line[pos])) {
+                pos += 1;
+            }
+        }
+    }
+
+    /**
+     * Get the number of arguments, the OpCode included.
+     *
+     * @return The number of arguments
+     * @since 1.4.0
+     */
+    public int size() {
+        return this.count - this.first;
+    }
+
+    /**
+     * Get the argument at the given index.
+     *
+     * @param index The argument index
+     * @return The decoded argument
+     * @throws ArrayIndexOutOfBoundsException If the argument does not exist
+     * @since 1.4.0
+     */
+    public String get(final int index) throws ArrayIndexOutOfBoundsException {
+        final int idx = this.__index(index);
+        if (this.strings[idx] == null) {
+            this.strings[idx] = new String(this.data, this.starts[idx], this.ends[idx] - this.starts[idx], StandardCharsets.UTF_8);
+        }
+        return this.strings[idx];
+    }
+
+    /**
+     * Check if the argument at the given index is equal to the given
+     * ASCII string, without decoding the argument.
+     *
+     * @param index The argument index
+     * @param value The ASCII string to compare with
+     * @return {@code true} if equal, otherwise, {@code false}
+     * @throws ArrayIndexOutOfBoundsException If the argument does not exist
+     * @since 1.4.0
+     */
+    public boolean equalsAt(final int index, final String value) throws ArrayIndexOutOfBoundsException {
+        final int idx = this.__index(index);
+        if (this.data == null || this.strings[idx] != null) {
+            return value.equals(this.strings[idx]);
+        }
+        final int length = this.ends[idx] - this.starts[idx];
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; ++i) {
+            if (this.data[this.starts[idx] + i] != (byte) value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the array holding the raw bytes of the arguments. Returns
+     * {@code null} for payload built with {@code of}, raw offsets are
+     * then meaningless.
+     *
+     * @return The raw array
+     * @since 1.4.0
+     */
+    public byte[] array() {
+        return this.data;
+    }
+
+    /**
+     * Get the start offset of the argument in {@code array()}.
+     *
+     * @param index The argument index
+     * @return The start offset
+     * @since 1.4.0
+     */
+    public int start(final int index) {
+        return this.starts[this.__index(index)];
+    }
+
+    /**
+     * Get the length in bytes of the argument.
+     *
+     * @param index The argument index
+     * @return The length in bytes
+     * @since 1.4.0
+     */
+    public int length(final int index) {
+        final int idx = this.__index(index);
+        return this.ends[idx] - this.starts[idx];
+    }
+
+    /**
+     * Get a view of this payload without the first {@code n} arguments.
+     * The view is reused by subsequent calls.
+     *
+     * @param n The number of arguments to skip
+     * @return The shifted payload
+     * @since 1.4.0
+     */
+    public Payload shift(final int n) {
+        if (this.shifted == null) {
+            this.shifted = new Payload();
+        }
+        this.shifted.data = this.data;
+        this.shifted.starts = this.starts;
+        this.shifted.ends = this.ends;
+        this.shifted.strings = this.strings;
+        this.shifted.count = this.count;
+        this.shifted.first = Math.min(this.first + n, this.count);
+        return this.shifted;
+    }
+
+    /**
+     * Get a detached copy of this payload with all arguments decoded.
+     *
+     * @return The copy
+     * @since 1.4.0
+     */
+    public Payload copy() {
+        final String[] args = new String[this.size()];
+        for (int i = 0; i < args.length; ++i) {
+            args[i] = this.get(i);
+        }
+        return Payload.of(args);
+    }
+
+    /**
+     * Convert the visible index to the internal index.
+     *
+     * @param index The visible index
+     * @return The internal index
+     * @throws ArrayIndexOutOfBoundsException If the argument does not exist
+     * @since 1.4.0
+     */
+    private int __index(final int index) throws ArrayIndexOutOfBoundsException {
+        final int idx = this.first + index;
+        if (index < 0 || idx >= this.count) {
+            throw new ArrayIndexOutOfBoundsException(index);
+        }
+        return idx;
+    }
+}
@@ -1,5 +1,7 @@
 package core.server.command;
 
+import core.server.session.FanoutScheduler;
+import core.server.session.PresenceRegistry;
 import core.server.session.Session;
 import core.server.session.SessionAuthType;
 import core.server.session.SessionStageLevel;
@@ -9,8 +11,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.UnsupportedEncodingException;
 import java.util.Collection;
-import java.util.List;
-import java.util.Map;
+import java.util.Set;
 
 /**
  * Change the user's current state.
@@ -23,7 +24,7 @@ import java.util.Map;
  * </p>
  *
  * @author Thibault Meyer
- * @version 1.1.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public class StateCommandImpl implements Command {
@@ -88,13 +89,13 @@ public class StateCommandImpl implements Command {
      * @param payload           The command arguments
      * @param usrSession        The user session who call this command
      * @param connectedSessions The collection of connected sessions
-     * @param globalFollowers   The map of all followers
+     * @param presenceRegistry  The registry of followers
      * @throws IndexOutOfBoundsException if payload don't contain enough arguments
      * @since 1.0.0
      */
     @Override
-    public void execute(final String[] payload, final Session usrSession, final Collection<Session> connectedSessions, final Map<String, List<Session>> globalFollowers) throws ArrayIndexOutOfBoundsException {
-        final String[] newState = payload[1].split(":");
+    public void execute(final Payload payload, final Session usrSession, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) throws ArrayIndexOutOfBoundsException {
+        final String[] newState = payload.get(1).split(":");
         try {
             String urlDecodedData = java.net.URLDecoder.decode(newState[0], "UTF-8");
             if (urlDecodedData.length() > 20) {
@@ -107,6 +108,7 @@ public class StateCommandImpl implements Command {
             usrSession.user.state = newState[0].substring(0, newState[0].length() > 20 ? 20 : newState[0].length());
         }
         usrSession.user.stateModifiedAt = System.currentTimeMillis() / 1000;
+        usrSession.invalidateDescriptor();
 
         LOG.debug(String.format("Client from %s (%s) change state to \"%s\"",
                 usrSession.network.address,
@@ -114,35 +116,13 @@ public class StateCommandImpl implements Command {
                 usrSession.user.state));
         PsychicNotification.getInstance().onUserChangeState(usrSession.user.login, usrSession.user.state, usrSession.network.ip);
 
-        final List<Session> toSendNotification = globalFollowers.get(usrSession.user.login);
-        if (toSendNotification != null) {
-            final String notifData = String.format("%d:user:%d/%d:%s@%s:%s:%s:%s | %s",
-                    usrSession.network.fd,
-                    usrSession.user.trustLevelClient,
-                    usrSession.user.trustLevelUser,
-                    usrSession.user.login,
-                    usrSession.network.ip,
-                    usrSession.user.operatingSystem,
-                    usrSession.user.location,
-                    usrSession.user.group,
-                    (payload[0].compareTo("state") != 0) ? payload[0] : String.format("state %s:%d",
+        final Set<Session> toSendNotification = presenceRegistry.getWatchers(usrSession.user.login);
+        if (!toSendNotification.isEmpty()) {
+            final String notifData = usrSession.getDescriptor().notifHeader + " | " +
+                    ((!payload.equalsAt(0, "state")) ? payload.get(0) : String.format("state %s:%d",
                             usrSession.user.state,
                             usrSession.user.stateModifiedAt));
-            for (Session s : toSendNotification) {
-                final String notifPacket = String.format("%s %s\n",
-                        s.authType == SessionAuthType.EXTERNAL_AUTHENTICATION ? "user_cmd" : "cmd",
-                        notifData);
-                s.addOutputDataAsChunk(notifPacket);
-                s.network.registerWriteEvent();
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace(String.format("Send notification to %s (%s) that user %s (%s) is now \"%s\"",
-                            s.network.address,
-                            s.user.login,
-                            usrSession.network.address,
-                            usrSession.user.login,
-                            usrSession.user.state));
-                }
-            }
+            FanoutScheduler.getInstance().publish(usrSession, toSendNotification, notifData);
         }
     }
 }
@@ -2,28 +2,18 @@ package core.server.command;
 
 import core.Settings;
 import core.network.DisconnectReason;
-import core.server.database.DBPool;
+import core.server.auth.AuthExecutor;
+import core.server.auth.KerberosAcceptor;
+import core.server.database.AccountDirectory;
+import core.server.session.PresenceRegistry;
 import core.server.session.Session;
 import core.server.session.SessionAuthType;
+import core.server.session.SessionRegistry;
 import core.server.session.SessionStageLevel;
-import org.ietf.jgss.GSSContext;
-import org.ietf.jgss.GSSCredential;
-import org.ietf.jgss.GSSException;
-import org.ietf.jgss.GSSManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import javax.security.auth.Subject;
-import javax.security.auth.callback.*;
-import javax.security.auth.login.LoginContext;
-import javax.security.auth.login.LoginException;
-import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.security.PrivilegedAction;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
 import java.util.*;
 
 /**
@@ -38,7 +28,7 @@ import java.util.*;
  * </pre>
  *
  * @author Thibault Meyer
- * @version 1.2.0
+ * @version 1.4.0
  * @since 1.2.0
  */
 public class UserKLogCommandImpl implements Command {
@@ -50,35 +40,6 @@ public class UserKLogCommandImpl implements Command {
      */
     private static final Logger LOG = LoggerFactory.getLogger(UserKLogCommandImpl.class.getName());
 
-
-    /**
-     * If enabled, this command is used to send notification to followers.
-     *
-     * @since 1.2.0
-     */
-    private Command changeState;
-
-    /**
-     * Default constructor.
-     *
-     * @since 1.2.0
-     */
-    public UserKLogCommandImpl() {
-        try {
-            this.changeState = (Command) Class.forName("core.server.command.StateCommandImpl").newInstance();
-        } catch (LinkageError | ClassNotFoundException | IllegalAccessException | InstantiationException ex) {
-            LOG.warn(String.format("Can't load commands \"%s\"", "core.server.command.StateCommandImpl"), ex);
-        }
-
-        if (Settings.krb5Realm != null && Settings.krb5Kdc != null && Settings.krb5JaasFile != null) {
-            System.setProperty("sun.security.krb5.debug", Settings.krb5Debug ? "true" : "false");
-            System.setProperty("java.security.krb5.realm", Settings.krb5Realm);
-            System.setProperty("java.security.krb5.kdc", Settings.krb5Kdc);
-            System.setProperty("java.security.auth.login.config", Settings.krb5JaasFile);
-            System.setProperty("javax.security.auth.useSubjectCredsOnly", "true");
-        }
-    }
-
     /**
      * Get the minimal number of arguments needed. The command OpCode is
      * included in the number of arguments.
@@ -125,6 +86,18 @@ public class UserKLogCommandImpl implements Command {
         return usrSession.stageLevel == SessionStageLevel.AUTHENTICATION_REQUESTED;
     }
 
+    /**
+     * Check if this command completes asynchronously. The credentials are
+     * checked on the authentication executor.
+     *
+     * @return {@code true} if the command is asynchronous, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    @Override
+    public boolean isAsynchronous() {
+        return true;
+    }
+
     /**
      * Execute the command. The first entry (0) of the payload always
      * contain the command OpCode.
@@ -132,163 +105,114 @@ public class UserKLogCommandImpl implements Command {
      * @param payload           The command arguments
      * @param usrSession        The user session who call this command
      * @param connectedSessions The collection of connected sessions
-     * @param globalFollowers   The map of all followers
+     * @param presenceRegistry  The registry of followers
      * @throws IndexOutOfBoundsException if payload don't contain enough arguments
      * @since 1.2.0
      */
     @Override
-    public void execute(final String[] payload, final Session usrSession, final Collection<Session> connectedSessions, final Map<String, List<Session>> globalFollowers) throws ArrayIndexOutOfBoundsException {
-        if (payload[0].compareTo((usrSession.authType == SessionAuthType.INTERNAL_AUTHENTICATION) ? "user_log" : "ext_user_log") != 0) {
-            usrSession.outputBuffer.add("rep 403 -- forbidden\n");
+    public void execute(final Payload payload, final Session usrSession, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) throws ArrayIndexOutOfBoundsException {
+        if (!payload.equalsAt(0, (usrSession.authType == SessionAuthType.INTERNAL_AUTHENTICATION) ? "user_log" : "ext_user_log")) {
+            usrSession.addOutputDataAsChunk("rep 403 -- forbidden\n");
         } else {
-            final String userName = this.__verifyKerberosTicket(Base64.getDecoder().decode(payload[1]));
-            if (userName != null) {
-                boolean canLogin = false;
-                final Connection dbConn = DBPool.getInstance().getSQLConnection();
-                try {
-                    if (Settings.databaseBuiltIntFunction) {
-                        final PreparedStatement reqPrepStatement = dbConn.prepareStatement("SELECT 1 FROM `ns_account` WHERE `ns_account`.`username` LIKE ? AND `ns_account`.`is_active`=1 LIMIT 1");
-                        reqPrepStatement.setString(1, userName);
-                        final ResultSet reqResult = reqPrepStatement.executeQuery();
-                        if (reqResult.next()) {
-                            canLogin = true;
-                        }
-                        reqResult.close();
-                        reqPrepStatement.close();
-                    }
-                    dbConn.close();
-                } catch (SQLException e) {
-                    LOG.warn("Something goes wrong with the database!", e);
-                    try {
-                        dbConn.close();
-                    } catch (SQLException ignore) {
-                    }
-                }
-
-                if (canLogin) {
-                    if (connectedSessions.stream().filter(us -> us.user.login != null && us.user.login.compareTo(userName) == 0).count() >= Settings.cfgMaxSessionPerLogin) {
-                        usrSession.outputBuffer.add("rep 737 -- too many sessions opened\n");
-                        usrSession.disconnectReason = DisconnectReason.TOO_MANY_SESSIONS;
-                    } else {
-                        usrSession.user.login = userName;
-                        usrSession.stageLevel = SessionStageLevel.AUTHENTICATED;
-                        usrSession.user.loginTime = System.currentTimeMillis() / 1000;
-                        try {
-                            String urlDecodedData = java.net.URLDecoder.decode(payload[4], "UTF-8");
-                            if (urlDecodedData.length() > 64) {
-                                urlDecodedData = urlDecodedData.substring(0, urlDecodedData.length() > 64 ? 64 : urlDecodedData.length());
-                                usrSession.user.group = java.net.URLEncoder.encode(urlDecodedData, "UTF-8").replaceAll("\\+", "%20");
-                            } else if (urlDecodedData.length() == 0) {
-                                usrSession.user.group = usrSession.authType == SessionAuthType.EXTERNAL_AUTHENTICATION ? "ext" : "int";
-                            } else {
-                                usrSession.user.group = payload[4];
-                            }
-                        } catch (UnsupportedEncodingException e) {
-                            usrSession.user.group = payload[4].substring(0, payload[4].length() > 64 ? 64 : payload[4].length());
-                        }
-                        try {
-                            String urlDecodedData = java.net.URLDecoder.decode(payload[3], "UTF-8");
-                            if (urlDecodedData.length() > 64) {
-                                urlDecodedData = urlDecodedData.substring(0, urlDecodedData.length() > 64 ? 64 : urlDecodedData.length());
-                                usrSession.user.location = java.net.URLEncoder.encode(urlDecodedData, "UTF-8").replaceAll("\\+", "%20");
-                            } else {
-                                usrSession.user.location = payload[3];
-                            }
-                        } catch (UnsupportedEncodingException e) {
-                            usrSession.user.location = payload[3].substring(0, payload[3].length() > 64 ? 64 : payload[3].length());
-                        }
-                        try {
-                            String urlDecodedData = java.net.URLDecoder.decode(payload[5], "UTF-8");
-                            if (urlDecodedData.length() > 64) {
-                                urlDecodedData = urlDecodedData.substring(0, urlDecodedData.length() > 64 ? 64 : urlDecodedData.length());
-                                usrSession.user.clientName = java.net.URLEncoder.encode(urlDecodedData, "UTF-8").replaceAll("\\+", "%20");
-                            } else {
-                                usrSession.user.clientName = payload[5];
-                            }
-                        } catch (UnsupportedEncodingException e) {
-                            usrSession.user.clientName = payload[5].substring(0, payload[5].length() > 64 ? 64 : payload[5].length());
-                        }
-                        usrSession.outputBuffer.add("rep 002 -- cmd end\n");
-                        LOG.debug("Client from {} authenticated as {}", usrSession.network.address, usrSession.user.login);
-                        if (this.changeState != null) {
-                            this.changeState.execute((String[]) Arrays.asList("login", "connection").toArray(), usrSession, connectedSessions, globalFollowers);
-                        }
-                    }
-                } else {
-                    usrSession.outputBuffer.add(String.format("rep 033 -- %s identification fail\n",
-                            (usrSession.authType == SessionAuthType.EXTERNAL_AUTHENTICATION) ? "ext user" : "user"));
-                }
-            } else {
-                usrSession.outputBuffer.add(String.format("rep 033 -- %s identification fail\n",
-                        (usrSession.authType == SessionAuthType.EXTERNAL_AUTHENTICATION) ? "ext user" : "user"));
+            final byte[] krbTicket = Base64.getDecoder().decode(payload.get(1));
+            final String location = payload.get(3);
+            final String group = payload.get(4);
+            final String clientName = payload.get(5);
+            final boolean isSubmitted = AuthExecutor.getInstance().submit(usrSession,
+                    () -> this.__fetchUserName(krbTicket),
+                    userName -> this.__completeAuthentication(usrSession, userName, location, group, clientName, connectedSessions, presenceRegistry));
+            if (!isSubmitted) {
+                usrSession.addOutputDataAsChunk("rep 500 -- internal error\n");
             }
         }
     }
 
     /**
-     * Verify a kerberos ticket and return the owner username.
+     * Verify the kerberos ticket and check the user account against the
+     * account directory. This method is blocking and must not be called
+     * from a NIO worker.
      *
      * @param krbTicket The kerberos ticket to verify
-     * @return The ticket's owner username
-     * @since 1.2.0
+     * @return The user name if the user can login, otherwise, {@code null}
+     * @since 1.4.0
      */
-    private String __verifyKerberosTicket(final byte[] krbTicket) {
-        try {
-            final LoginContext loginCtx = new LoginContext("Server", new LoginCallbackHandler(Settings.krb5Password));
-            loginCtx.login();
-
-            return Subject.doAs(loginCtx.getSubject(), (PrivilegedAction<String>) () -> {
-                try {
-                    GSSManager manager = GSSManager.getInstance();
-                    GSSContext context = manager.createContext((GSSCredential) null);
-                    context.acceptSecContext(krbTicket, 0, krbTicket.length);
-                    return context.getSrcName().toString();
-                } catch (GSSException ignore) {
-                    return null;
-                }
-            });
-        } catch (LoginException e) {
-            LOG.error("Can't authenticate against the KDC", e);
+    private String __fetchUserName(final byte[] krbTicket) {
+        final String userName = KerberosAcceptor.getInstance().verify(krbTicket);
+        if (userName == null || !Settings.databaseBuiltIntFunction) {
+            return null;
         }
-        return null;
+        final AccountDirectory.Account account = AccountDirectory.getInstance().find(userName);
+        return account != null && account.isActive ? userName : null;
     }
 
     /**
-     * Password callback handler for resolving password/usernames
-     * for a JAAS login.
+     * Finish the authentication once the ticket has been verified. Called
+     * from the NIO worker owning the session.
      *
-     * @author Thibault Meyer
-     * @version 1.2.0
-     * @since 1.2.0
+     * @param usrSession        The user session who call this command
+     * @param userName          The user name, {@code null} if the authentication failed
+     * @param location          The user location URL encoded
+     * @param group             The user group URL encoded
+     * @param clientName        The client name URL encoded
+     * @param connectedSessions The collection of connected sessions
+     * @param presenceRegistry  The registry of followers
+     * @since 1.4.0
      */
-    private class LoginCallbackHandler implements CallbackHandler {
-
-        private final String password;
-        private final String username;
-
-        public LoginCallbackHandler(String password) {
-            super();
-            this.username = null;
-            this.password = password;
-        }
-
-        /**
-         * Handles the callbacks, and sets the user/password detail.
-         *
-         * @param callbacks The callbacks to handle
-         * @throws IOException if an input or output error occurs.
-         * @since 1.2.0
-         */
-        public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
-            for (Callback callback : callbacks) {
-                if (callback instanceof NameCallback && username != null) {
-                    NameCallback nc = (NameCallback) callback;
-                    nc.setName(username);
-                } else if (callback instanceof PasswordCallback) {
-                    PasswordCallback pc = (PasswordCallback) callback;
-                    pc.setPassword(password.toCharArray());
+    private void __completeAuthentication(final Session usrSession, final String userName, final String location, final String group, final String clientName, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) {
+        if (userName != null) {
+            if (!SessionRegistry.getInstance().addLogin(userName, usrSession, Settings.cfgMaxSessionPerLogin)) {
+                usrSession.addOutputDataAsChunk("rep 737 -- too many sessions opened\n");
+                usrSession.disconnectReason = DisconnectReason.TOO_MANY_SESSIONS;
+            } else {
+                usrSession.user.login = userName;
+                usrSession.stageLevel = SessionStageLevel.AUTHENTICATED;
+                usrSession.user.loginTime = System.currentTimeMillis() / 1000;
+                try {
+                    String urlDecodedData = java.net.URLDecoder.decode(group, "UTF-8");
+                    if (urlDecodedData.length() > 64) {
+                        urlDecodedData = urlDecodedData.substring(0, urlDecodedData.length() > 64 ? 64 : urlDecodedData.length());
+                        usrSession.user.group = java.net.URLEncoder.encode(urlDecodedData, "UTF-8").replaceAll("\\+", "%20");
+                    } else if (urlDecodedData.length() == 0) {
+                        usrSession.user.group = usrSession.authType == SessionAuthType.EXTERNAL_AUTHENTICATION ? "ext" : "int";
+                    } else {
+                        usrSession.user.group = group;
+                    }
+                } catch (UnsupportedEncodingException e) {
+                    usrSession.user.group = group.substring(0, group.length() > 64 ? 64 : group.length());
+                }
+                try {
+                    String urlDecodedData = java.net.URLDecoder.decode(location, "UTF-8");
+                    if (urlDecodedData.length() > 64) {
+                        urlDecodedData = urlDecodedData.substring(0, urlDecodedData.length() > 64 ? 64 : urlDecodedData.length());
+                        usrSession.user.location = java.net.URLEncoder.encode(urlDecodedData, "UTF-8").replaceAll("\\+", "%20");
+                    } else {
+                        usrSession.user.location = location;
+                    }
+                } catch (UnsupportedEncodingException e) {
+                    usrSession.user.location = location.substring(0, location.length() > 64 ? 64 : location.length());
+                }
+                try {
+                    String urlDecodedData = java.net.URLDecoder.decode(clientName, "UTF-8");
+                    if (urlDecodedData.length() > 64) {
+                        urlDecodedData = urlDecodedData.substring(0, urlDecodedData.length() > 64 ? 64 : urlDecodedData.length());
+                        usrSession.user.clientName = java.net.URLEncoder.encode(urlDecodedData, "UTF-8").replaceAll("\\+", "%20");
+                    } else {
+                        usrSession.user.clientName = clientName;
+                    }
+                } catch (UnsupportedEncodingException e) {
+                    usrSession.user.clientName = clientName.substring(0, clientName.length() > 64 ? 64 : clientName.length());
+                }
+                usrSession.invalidateDescriptor();
+                usrSession.addOutputDataAsChunk("rep 002 -- cmd end\n");
+                LOG.debug("Client from {} authenticated as {}", usrSession.network.address, usrSession.user.login);
+                final Command changeState = CommandRegistry.getInstance().get("state");
+                if (changeState != null) {
+                    changeState.execute(Payload.of("login", "connection"), usrSession, connectedSessions, presenceRegistry);
                 }
             }
+        } else {
+            usrSession.addOutputDataAsChunk(String.format("rep 033 -- %s identification fail\n",
+                    (usrSession.authType == SessionAuthType.EXTERNAL_AUTHENTICATION) ? "ext user" : "user"));
         }
     }
 }
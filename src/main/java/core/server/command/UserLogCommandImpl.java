@@ -3,22 +3,18 @@ package core.server.command;
 import core.Settings;
 import core.crypto.MD5;
 import core.network.DisconnectReason;
-import core.server.database.DBPool;
+import core.server.auth.AuthExecutor;
+import core.server.database.AccountDirectory;
+import core.server.session.PresenceRegistry;
 import core.server.session.Session;
 import core.server.session.SessionAuthType;
+import core.server.session.SessionRegistry;
 import core.server.session.SessionStageLevel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.UnsupportedEncodingException;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.List;
-import java.util.Map;
 
 /**
  * Authentication agent for user from external location.
@@ -31,7 +27,7 @@ import java.util.Map;
  * </pre>
  *
  * @author Thibault Meyer
- * @version 1.1.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public class UserLogCommandImpl implements Command {
@@ -43,27 +39,6 @@ public class UserLogCommandImpl implements Command {
      */
     private static final Logger LOG = LoggerFactory.getLogger(UserLogCommandImpl.class.getName());
 
-
-    /**
-     * If enabled, this command is used to send notification to followers.
-     *
-     * @since 1.0.0
-     */
-    private Command changeState;
-
-    /**
-     * Default constructor.
-     *
-     * @since 1.0.0
-     */
-    public UserLogCommandImpl() {
-        try {
-            this.changeState = (Command) Class.forName("core.server.command.StateCommandImpl").newInstance();
-        } catch (LinkageError | ClassNotFoundException | IllegalAccessException | InstantiationException ex) {
-            LOG.warn(String.format("Can't load commands \"%s\"", "core.server.command.StateCommandImpl"), ex);
-        }
-    }
-
     /**
      * Get the minimal number of arguments needed. The command OpCode is
      * included in the number of arguments.
@@ -110,6 +85,18 @@ public class UserLogCommandImpl implements Command {
         return usrSession.stageLevel == SessionStageLevel.AUTHENTICATION_REQUESTED;
     }
 
+    /**
+     * Check if this command completes asynchronously. The credentials are
+     * checked on the authentication executor.
+     *
+     * @return {@code true} if the command is asynchronous, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    @Override
+    public boolean isAsynchronous() {
+        return true;
+    }
+
     /**
      * Execute the command. The first entry (0) of the payload always
      * contain the command OpCode.
@@ -117,99 +104,112 @@ public class UserLogCommandImpl implements Command {
      * @param payload           The command arguments
      * @param usrSession        The user session who call this command
      * @param connectedSessions The collection of connected sessions
-     * @param globalFollowers   The map of all followers
+     * @param presenceRegistry  The registry of followers
      * @throws IndexOutOfBoundsException if payload don't contain enough arguments
      * @since 1.0.0
      */
     @Override
-    public void execute(final String[] payload, final Session usrSession, final Collection<Session> connectedSessions, final Map<String, List<Session>> globalFollowers) throws ArrayIndexOutOfBoundsException {
-        if (payload[0].compareTo((usrSession.authType == SessionAuthType.INTERNAL_AUTHENTICATION) ? "user_log" : "ext_user_log") != 0) {
-            usrSession.outputBuffer.add("rep 403 -- forbidden\n");
+    public void execute(final Payload payload, final Session usrSession, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) throws ArrayIndexOutOfBoundsException {
+        if (!payload.equalsAt(0, (usrSession.authType == SessionAuthType.INTERNAL_AUTHENTICATION) ? "user_log" : "ext_user_log")) {
+            usrSession.addOutputDataAsChunk("rep 403 -- forbidden\n");
         } else {
-            String userGroup = null;
-            payload[1] = payload[1].substring(0, payload[1].length() > 35 ? 35 : payload[1].length());
-            final Connection dbConn = DBPool.getInstance().getSQLConnection();
-            try {
-                if (Settings.databaseBuiltIntFunction) {
-                    final PreparedStatement reqPrepStatement = dbConn.prepareStatement("SELECT `group` FROM `ns_account` WHERE `ns_account`.`username` LIKE ? AND MD5(CONCAT(?, '-', ?, '/', ?, `ns_account`.`password`)) LIKE ? AND `ns_account`.`is_active`=1 LIMIT 1");
-                    reqPrepStatement.setString(1, payload[1]);
-                    reqPrepStatement.setString(2, usrSession.hash);
-                    reqPrepStatement.setString(3, usrSession.network.ip);
-                    reqPrepStatement.setInt(4, usrSession.network.port);
-                    reqPrepStatement.setString(5, payload[2]);
-                    final ResultSet reqResult = reqPrepStatement.executeQuery();
-                    if (reqResult.next()) {
-                        userGroup = reqResult.getString("group");
-                    }
-                    reqResult.close();
-                    reqPrepStatement.close();
-                } else {
-                    final PreparedStatement reqPrepStatement = dbConn.prepareStatement("SELECT `password`, `group` FROM `ns_account` WHERE `ns_account`.`username` LIKE ? AND `ns_account`.`is_active`=1 LIMIT 1");
-                    reqPrepStatement.setString(1, payload[1]);
-                    final ResultSet reqResult = reqPrepStatement.executeQuery();
-                    if (reqResult.next()) {
-                        final String hashMd5 = MD5.hash(String.format("%s-%s/%d%s",
-                                usrSession.hash,
-                                usrSession.network.ip,
-                                usrSession.network.port,
-                                reqResult.getString("password")));
-                        if (hashMd5.compareTo(payload[2]) == 0) {
-                            userGroup = reqResult.getString("group");
-                        }
-                    }
-                    reqResult.close();
-                    reqPrepStatement.close();
-                }
-                dbConn.close();
-            } catch (SQLException e) {
-                LOG.warn("Something goes wrong with the database!", e);
-                try {
-                    dbConn.close();
-                } catch (SQLException ignore) {
-                }
+            final String login = payload.get(1).substring(0, payload.get(1).length() > 35 ? 35 : payload.get(1).length());
+            final String password = payload.get(2);
+            final String location = payload.get(3);
+            final String clientName = payload.get(4);
+            final String sessionHash = usrSession.hash;
+            final String ip = usrSession.network.ip;
+            final int port = usrSession.network.port;
+            final boolean isSubmitted = AuthExecutor.getInstance().submit(usrSession,
+                    () -> this.__fetchUserGroup(login, password, sessionHash, ip, port),
+                    userGroup -> this.__completeAuthentication(usrSession, login, userGroup, location, clientName, connectedSessions, presenceRegistry));
+            if (!isSubmitted) {
+                usrSession.addOutputDataAsChunk("rep 500 -- internal error\n");
             }
+        }
+    }
 
-            if (userGroup != null) {
-                if (connectedSessions.stream().filter(us -> us.user.login != null && us.user.login.compareTo(payload[1]) == 0).count() >= Settings.cfgMaxSessionPerLogin) {
-                    usrSession.addOutputDataAsChunk("rep 737 -- too many sessions opened\n");
-                    usrSession.disconnectReason = DisconnectReason.TOO_MANY_SESSIONS;
-                } else {
-                    usrSession.user.login = payload[1];
-                    usrSession.stageLevel = SessionStageLevel.AUTHENTICATED;
-                    usrSession.user.loginTime = System.currentTimeMillis() / 1000;
-                    usrSession.user.group = userGroup;
-                    try {
-                        String urlDecodedData = java.net.URLDecoder.decode(payload[3], "UTF-8");
-                        if (urlDecodedData.length() > 64) {
-                            urlDecodedData = urlDecodedData.substring(0, urlDecodedData.length() > 64 ? 64 : urlDecodedData.length());
-                            usrSession.user.location = java.net.URLEncoder.encode(urlDecodedData, "UTF-8").replaceAll("\\+", "%20");
-                        } else {
-                            usrSession.user.location = payload[3];
-                        }
-                    } catch (UnsupportedEncodingException e) {
-                        usrSession.user.location = payload[3].substring(0, payload[3].length() > 64 ? 64 : payload[3].length());
-                    }
-                    try {
-                        String urlDecodedData = java.net.URLDecoder.decode(payload[4], "UTF-8");
-                        if (urlDecodedData.length() > 64) {
-                            urlDecodedData = urlDecodedData.substring(0, urlDecodedData.length() > 64 ? 64 : urlDecodedData.length());
-                            usrSession.user.clientName = java.net.URLEncoder.encode(urlDecodedData, "UTF-8").replaceAll("\\+", "%20");
-                        } else {
-                            usrSession.user.clientName = payload[4];
-                        }
-                    } catch (UnsupportedEncodingException e) {
-                        usrSession.user.clientName = payload[4].substring(0, payload[4].length() > 64 ? 64 : payload[4].length());
+    /**
+     * Check the user credentials against the account directory. This
+     * method can be blocking and must not be called from a NIO worker.
+     *
+     * @param login       The user login
+     * @param password    The hashed password sent by the client
+     * @param sessionHash The random hash of the session
+     * @param ip          The remote IP address
+     * @param port        The remote port
+     * @return The user group if credentials are valid, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    private String __fetchUserGroup(final String login, final String password, final String sessionHash, final String ip, final int port) {
+        final AccountDirectory.Account account = AccountDirectory.getInstance().find(login);
+        if (account == null || !account.isActive) {
+            return null;
+        }
+        final String hashMd5 = MD5.hash(String.format("%s-%s/%d%s",
+                sessionHash,
+                ip,
+                port,
+                account.password));
+        return hashMd5.compareTo(password) == 0 ? account.group : null;
+    }
+
+    /**
+     * Finish the authentication once the credentials have been checked.
+     * Called from the NIO worker owning the session.
+     *
+     * @param usrSession        The user session who call this command
+     * @param login             The user login
+     * @param userGroup         The user group, {@code null} if the credentials are invalid
+     * @param location          The user location URL encoded
+     * @param clientName        The client name URL encoded
+     * @param connectedSessions The collection of connected sessions
+     * @param presenceRegistry  The registry of followers
+     * @since 1.4.0
+     */
+    private void __completeAuthentication(final Session usrSession, final String login, final String userGroup, final String location, final String clientName, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) {
+        if (userGroup != null) {
+            if (!SessionRegistry.getInstance().addLogin(login, usrSession, Settings.cfgMaxSessionPerLogin)) {
+                usrSession.addOutputDataAsChunk("rep 737 -- too many sessions opened\n");
+                usrSession.disconnectReason = DisconnectReason.TOO_MANY_SESSIONS;
+            } else {
+                usrSession.user.login = login;
+                usrSession.stageLevel = SessionStageLevel.AUTHENTICATED;
+                usrSession.user.loginTime = System.currentTimeMillis() / 1000;
+                usrSession.user.group = userGroup;
+                try {
+                    String urlDecodedData = java.net.URLDecoder.decode(location, "UTF-8");
+                    if (urlDecodedData.length() > 64) {
+                        urlDecodedData = urlDecodedData.substring(0, urlDecodedData.length() > 64 ? 64 : urlDecodedData.length());
+                        usrSession.user.location = java.net.URLEncoder.encode(urlDecodedData, "UTF-8").replaceAll("\\+", "%20");
+                    } else {
+                        usrSession.user.location = location;
                     }
-                    usrSession.addOutputDataAsChunk("rep 002 -- cmd end\n");
-                    LOG.debug("Client from {} authenticated as {}", usrSession.network.address, usrSession.user.login);
-                    if (this.changeState != null) {
-                        this.changeState.execute((String[]) Arrays.asList("login", "connection").toArray(), usrSession, connectedSessions, globalFollowers);
+                } catch (UnsupportedEncodingException e) {
+                    usrSession.user.location = location.substring(0, location.length() > 64 ? 64 : location.length());
+                }
+                try {
+                    String urlDecodedData = java.net.URLDecoder.decode(clientName, "UTF-8");
+                    if (urlDecodedData.length() > 64) {
+                        urlDecodedData = urlDecodedData.substring(0, urlDecodedData.length() > 64 ? 64 : urlDecodedData.length());
+                        usrSession.user.clientName = java.net.URLEncoder.encode(urlDecodedData, "UTF-8").replaceAll("\\+", "%20");
+                    } else {
+                        usrSession.user.clientName = clientName;
                     }
+                } catch (UnsupportedEncodingException e) {
+                    usrSession.user.clientName = clientName.substring(0, clientName.length() > 64 ? 64 : clientName.length());
+                }
+                usrSession.invalidateDescriptor();
+                usrSession.addOutputDataAsChunk("rep 002 -- cmd end\n");
+                LOG.debug("Client from {} authenticated as {}", usrSession.network.address, usrSession.user.login);
+                final Command changeState = CommandRegistry.getInstance().get("state");
+                if (changeState != null) {
+                    changeState.execute(Payload.of("login", "connection"), usrSession, connectedSessions, presenceRegistry);
                 }
-            } else {
-                usrSession.addOutputDataAsChunk(String.format("rep 033 -- %s identification fail\n",
-                        (usrSession.authType == SessionAuthType.EXTERNAL_AUTHENTICATION) ? "ext user" : "user"));
             }
+        } else {
+            usrSession.addOutputDataAsChunk(String.format("rep 033 -- %s identification fail\n",
+                    (usrSession.authType == SessionAuthType.EXTERNAL_AUTHENTICATION) ? "ext user" : "user"));
         }
     }
 }
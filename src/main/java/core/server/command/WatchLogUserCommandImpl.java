@@ -1,20 +1,15 @@
 package core.server.command;
 
-import core.server.database.DBPool;
+import core.server.database.AccountDirectory;
+import core.server.session.PresenceRegistry;
 import core.server.session.Session;
 import core.server.session.SessionStageLevel;
 import core.server.toolbox.ListLoginParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Set callback to listen events from some user.
@@ -24,7 +19,7 @@ import java.util.Map;
  * </pre>
  *
  * @author Thibault Meyer
- * @version 1.1.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public class WatchLogUserCommandImpl implements Command {
@@ -82,6 +77,19 @@ public class WatchLogUserCommandImpl implements Command {
         return usrSession.stageLevel == SessionStageLevel.AUTHENTICATED;
     }
 
+    /**
+     * Get the number of items the command will work on.
+     *
+     * @param payload           The command arguments
+     * @param connectedSessions The collection of connected sessions
+     * @return The number of requested logins
+     * @since 1.4.0
+     */
+    @Override
+    public int getItemCount(final Payload payload, final Collection<Session> connectedSessions) {
+        return ListLoginParser.countEntries(payload.get(1));
+    }
+
     /**
      * Execute the command. The first entry (0) of the payload always
      * contain the command OpCode.
@@ -89,51 +97,22 @@ public class WatchLogUserCommandImpl implements Command {
      * @param payload           The command arguments
      * @param usrSession        The user session who call this command
      * @param connectedSessions The collection of connected sessions
-     * @param globalFollowers   The map of all followers
+     * @param presenceRegistry  The registry of followers
      * @throws IndexOutOfBoundsException if payload don't contain enough arguments
      * @since 1.0.0
      */
     @Override
-    public void execute(final String[] payload, final Session usrSession, final Collection<Session> connectedSessions, final Map<String, List<Session>> globalFollowers) throws ArrayIndexOutOfBoundsException {
-        final List<String> lstLoginListen = ListLoginParser.parseToLogin(payload[1], connectedSessions);
-        final Connection dbConn = DBPool.getInstance().getSQLConnection();
-        try {
-            int i = 0;
-            while (i < lstLoginListen.size()) {
-                final PreparedStatement reqPrepStatement = dbConn.prepareStatement("SELECT 1 FROM `ns_account` WHERE `username` LIKE ?");
-                reqPrepStatement.setString(1, lstLoginListen.get(i));
-                final ResultSet reqResult = reqPrepStatement.executeQuery();
-                if (reqResult.next()) {
-                    i += 1;
-                } else {
-                    lstLoginListen.remove(i);
-                }
-                reqResult.close();
-                reqPrepStatement.close();
-            }
-            dbConn.close();
-        } catch (SQLException e) {
-            LOG.warn("Something goes wrong with the database!", e);
-            try {
-                dbConn.close();
-            } catch (SQLException ignore) {
-            }
-        }
-        
+    public void execute(final Payload payload, final Session usrSession, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) throws ArrayIndexOutOfBoundsException {
+        final List<String> lstLoginListen = ListLoginParser.parseToLogin(payload.get(1), connectedSessions);
+        lstLoginListen.removeIf(login -> !AccountDirectory.getInstance().exists(login));
+
         /*
         // DISABLE TO BE COMPLIANT WITH SOME CLIENTS
         // ENABLE TO BE RFC COMPLIANT
-        for (final List<Session> followers : globalFollowers.values()) {
-            if (followers.contains(usrSession)) {
-                followers.remove(usrSession);
-            }
-        }
+        presenceRegistry.unwatchAll(usrSession);
         */
         for (final String login : lstLoginListen) {
-            globalFollowers.putIfAbsent(login, new ArrayList<>());
-            if (!globalFollowers.get(login).contains(usrSession)) {
-                globalFollowers.get(login).add(usrSession);
-            }
+            presenceRegistry.watch(usrSession, login);
         }
 
         if (LOG.isTraceEnabled()) {
@@ -1,13 +1,14 @@
 package core.server.command;
 
+import core.server.session.PresenceRegistry;
 import core.server.session.Session;
 import core.server.session.SessionAuthType;
+import core.server.session.SessionDescriptor;
 import core.server.session.SessionStageLevel;
 import core.server.toolbox.ListLoginParser;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Get information about connected users.
@@ -17,7 +18,7 @@ import java.util.Map;
  * </pre>
  *
  * @author Thibault Meyer
- * @version 1.1.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public class WhoCommandImpl implements Command {
@@ -68,6 +69,30 @@ public class WhoCommandImpl implements Command {
         return usrSession.stageLevel == SessionStageLevel.AUTHENTICATED;
     }
 
+    /**
+     * Check if this command is expensive to execute.
+     *
+     * @return {@code true} if the command is expensive, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    @Override
+    public boolean isExpensive() {
+        return true;
+    }
+
+    /**
+     * Get the number of items the command will work on.
+     *
+     * @param payload           The command arguments
+     * @param connectedSessions The collection of connected sessions
+     * @return The number of requested logins
+     * @since 1.4.0
+     */
+    @Override
+    public int getItemCount(final Payload payload, final Collection<Session> connectedSessions) {
+        return ListLoginParser.countEntries(payload.get(1));
+    }
+
     /**
      * Execute the command. The first entry (0) of the payload always
      * contain the command OpCode.
@@ -75,42 +100,27 @@ public class WhoCommandImpl implements Command {
      * @param payload           The command arguments
      * @param usrSession        The user session who call this command
      * @param connectedSessions The collection of connected sessions
-     * @param globalFollowers   The map of all followers
+     * @param presenceRegistry  The registry of followers
      * @throws IndexOutOfBoundsException if payload don't contain enough arguments
      * @since 1.0.0
      */
     @Override
-    public void execute(final String[] payload, final Session usrSession, final Collection<Session> connectedSessions, final Map<String, List<Session>> globalFollowers) throws ArrayIndexOutOfBoundsException {
-        final List<Session> lsSessionToWho = ListLoginParser.parseToSession(payload[1], connectedSessions);
+    public void execute(final Payload payload, final Session usrSession, final Collection<Session> connectedSessions, final PresenceRegistry presenceRegistry) throws ArrayIndexOutOfBoundsException {
+        final List<Session> lsSessionToWho = ListLoginParser.parseToSession(payload.get(1), connectedSessions);
         final long currentTimestamp = System.currentTimeMillis() / 1000;
-        final String cmdHeader = String.format("%s %d:user:%d/%d:%s@%s:%s:%s:%s",
-                (usrSession.authType == SessionAuthType.EXTERNAL_AUTHENTICATION) ? "user_cmd" : "cmd",
-                usrSession.network.fd,
-                usrSession.user.trustLevelClient,
-                usrSession.user.trustLevelUser,
-                usrSession.user.login,
-                usrSession.network.ip,
-                usrSession.user.operatingSystem,
-                usrSession.user.location,
-                usrSession.user.group);
+        final String cmdHeader = ((usrSession.authType == SessionAuthType.EXTERNAL_AUTHENTICATION) ? "user_cmd " : "cmd ")
+                + usrSession.getDescriptor().notifHeader;
+        final StringBuilder sb = new StringBuilder();
         for (final Session s : lsSessionToWho) {
-            final String cmdFormat = String.format("%s | who %d %s %s %d %d %d %d %s %s %s %s:%d %s\n",
-                    cmdHeader,
-                    s.network.fd,
-                    s.user.login,
-                    s.network.ip,
-                    s.user.loginTime,
-                    currentTimestamp,
-                    s.user.trustLevelClient,
-                    s.user.trustLevelUser,
-                    s.user.operatingSystem,
-                    s.user.location,
-                    s.user.group,
-                    s.user.state,
-                    s.user.stateModifiedAt,
-                    s.user.clientName);
-            usrSession.addOutputDataAsChunk(cmdFormat);
+            final SessionDescriptor descriptor = s.getDescriptor();
+            sb.setLength(0);
+            sb.append(cmdHeader).append(" | who ")
+                    .append(descriptor.whoPrefix)
+                    .append(currentTimestamp)
+                    .append(descriptor.whoSuffix)
+                    .append('\n');
+            usrSession.addOutputDataAsChunk(sb.toString());
         }
-        usrSession.addOutputDataAsChunk(String.format("%s | who rep 002 -- cmd end\n", cmdHeader));
+        usrSession.addOutputDataAsChunk(cmdHeader + " | who rep 002 -- cmd end\n");
     }
 }
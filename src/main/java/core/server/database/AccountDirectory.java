@@ -0,0 +1,320 @@
+package core.server.database;
+
+import core.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory copy of the {@code ns_account} table. All accounts are loaded
+ * at startup, new accounts are fetched on each refresh and the whole table
+ * is reloaded periodically to catch updated and deleted accounts. The
+ * directory only serves {@link #exists(String)}, which never blocks;
+ * {@link #find(String)} always reads the account from the database so
+ * authentication sees deactivated accounts and password changes at once.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class AccountDirectory {
+
+    /**
+     * Logger.
+     *
+     * @since 1.4.0
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(AccountDirectory.class.getName());
+
+    /**
+     * The accounts, indexed by lower case username.
+     *
+     * @since 1.4.0
+     */
+    private volatile Map<String, Account> accounts;
+
+    /**
+     * The highest account identifier loaded.
+     *
+     * @since 1.4.0
+     */
+    private volatile long lastAccountId;
+
+    /**
+     * Time in milliseconds of the last full reload.
+     *
+     * @since 1.4.0
+     */
+    private long lastFullRefresh;
+
+    /**
+     * The thread running the refreshes.
+     *
+     * @since 1.4.0
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Default constructor.
+     *
+     * @since 1.4.0
+     */
+    private AccountDirectory() {
+        this.accounts = new ConcurrentHashMap<>();
+        this.lastAccountId = 0;
+        this.lastFullRefresh = 0;
+    }
+
+    /**
+     * Get the instance of {@code AccountDirectory}.
+     *
+     * @return The instance of {@code AccountDirectory}
+     * @since 1.4.0
+     */
+    public static AccountDirectory getInstance() {
+        return AccountDirectorySingletonHolder.instance;
+    }
+
+    /**
+     * Build the key used to index the given username. Usernames are
+     * compared without case like the {@code username} column does.
+     *
+     * @param username The username
+     * @return The key
+     * @since 1.4.0
+     */
+    private static String __key(final String username) {
+        return username.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Read an account from the current row of the result set.
+     *
+     * @param resultSet The result set
+     * @return The account
+     * @throws SQLException If the row can't be read
+     * @since 1.4.0
+     */
+    private static Account __readAccount(final ResultSet resultSet) throws SQLException {
+        return new Account(resultSet.getLong("id"),
+                resultSet.getString("username"),
+                resultSet.getString("password"),
+                resultSet.getString("group"),
+                resultSet.getInt("is_active") == 1);
+    }
+
+    /**
+     * Load all accounts with an identifier greater than the given one.
+     *
+     * @param target The map to fill
+     * @param fromId Load accounts after this identifier
+     * @return The highest identifier loaded
+     * @throws SQLException If no connection is available or the database can't be read
+     * @since 1.4.0
+     */
+    private long __loadAccounts(final Map<String, Account> target, final long fromId) throws SQLException {
+        final Connection dbConn = DBPool.getInstance().getSQLConnection();
+        if (dbConn == null) {
+            throw new SQLException("No database connection available");
+        }
+        long maxId = fromId;
+        try (final Connection conn = dbConn;
+             final PreparedStatement reqPrepStatement = conn.prepareStatement("SELECT `id`, `username`, `password`, `group`, `is_active` FROM `ns_account` WHERE `id` > ?")) {
+            reqPrepStatement.setLong(1, fromId);
+            try (final ResultSet reqResult = reqPrepStatement.executeQuery()) {
+                while (reqResult.next()) {
+                    final Account account = AccountDirectory.__readAccount(reqResult);
+                    target.put(AccountDirectory.__key(account.username), account);
+                    if (account.id > maxId) {
+                        maxId = account.id;
+                    }
+                }
+            }
+        }
+        return maxId;
+    }
+
+    /**
+     * Refresh the directory. New accounts are loaded on each call, the
+     * whole table is reloaded once {@code Settings.databaseAccountFullRefresh}
+     * seconds have elapsed since the last full reload.
+     *
+     * @since 1.4.0
+     */
+    private synchronized void __refresh() {
+        final long now = System.currentTimeMillis();
+        try {
+            if (now - this.lastFullRefresh >= Settings.databaseAccountFullRefresh * 1000L) {
+                final Map<String, Account> newAccounts = new ConcurrentHashMap<>();
+                this.lastAccountId = this.__loadAccounts(newAccounts, 0);
+                this.accounts = newAccounts;
+                this.lastFullRefresh = now;
+                LOG.debug("Account directory reloaded ({} accounts)", newAccounts.size());
+            } else {
+                this.lastAccountId = this.__loadAccounts(this.accounts, this.lastAccountId);
+            }
+        } catch (SQLException e) {
+            LOG.warn("Can't refresh the account directory", e);
+        }
+    }
+
+    /**
+     * Load the directory and schedule its refresh.
+     *
+     * @since 1.4.0
+     */
+    public synchronized void start() {
+        if (this.scheduler != null) {
+            return;
+        }
+        this.__refresh();
+        LOG.info("Account directory loaded ({} accounts)", this.accounts.size());
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "account-directory");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long period = Math.max(1, Settings.databaseAccountRefresh);
+        this.scheduler.scheduleWithFixedDelay(this::__refresh, period, period, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Get the account with the given username. The account is always read
+     * from the database and the directory is updated with it. This method
+     * blocks and must only be called from the authentication executor.
+     *
+     * @param username The username
+     * @return The account, otherwise, {@code null}
+     * @see core.server.auth.AuthExecutor
+     * @since 1.4.0
+     */
+    public Account find(final String username) {
+        final Connection dbConn = DBPool.getInstance().getSQLConnection();
+        if (dbConn == null) {
+            return null;
+        }
+        try (final Connection conn = dbConn;
+             final PreparedStatement reqPrepStatement = conn.prepareStatement("SELECT `id`, `username`, `password`, `group`, `is_active` FROM `ns_account` WHERE `ns_account`.`username` = ? LIMIT 1")) {
+            reqPrepStatement.setString(1, username);
+            try (final ResultSet reqResult = reqPrepStatement.executeQuery()) {
+                if (reqResult.next()) {
+                    final Account dbAccount = AccountDirectory.__readAccount(reqResult);
+                    this.accounts.put(AccountDirectory.__key(dbAccount.username), dbAccount);
+                    return dbAccount;
+                }
+                this.accounts.remove(AccountDirectory.__key(username));
+            }
+        } catch (SQLException e) {
+            LOG.warn("Something goes wrong with the database!", e);
+        }
+        return null;
+    }
+
+    /**
+     * Check if an account exists with the given username. Only the
+     * directory is read, so this method never blocks and can be called from
+     * the NIO workers. Accounts created since the last refresh are not
+     * seen until the next one.
+     *
+     * @param username The username
+     * @return {@code true} if the account exists, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean exists(final String username) {
+        return this.accounts.containsKey(AccountDirectory.__key(username));
+    }
+
+    /**
+     * Get the number of accounts in the directory.
+     *
+     * @return The number of accounts
+     * @since 1.4.0
+     */
+    public int size() {
+        return this.accounts.size();
+    }
+
+    /**
+     * An account of the {@code ns_account} table.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    public static final class Account {
+
+        /**
+         * The account identifier.
+         *
+         * @since 1.4.0
+         */
+        public final long id;
+
+        /**
+         * The username.
+         *
+         * @since 1.4.0
+         */
+        public final String username;
+
+        /**
+         * The password.
+         *
+         * @since 1.4.0
+         */
+        public final String password;
+
+        /**
+         * The group.
+         *
+         * @since 1.4.0
+         */
+        public final String group;
+
+        /**
+         * Is this account allowed to login?
+         *
+         * @since 1.4.0
+         */
+        public final boolean isActive;
+
+        /**
+         * Build a new account.
+         *
+         * @param id       The account identifier
+         * @param username The username
+         * @param password The password
+         * @param group    The group
+         * @param isActive Is this account allowed to login?
+         * @since 1.4.0
+         */
+        Account(final long id, final String username, final String password, final String group, final boolean isActive) {
+            this.id = id;
+            this.username = username;
+            this.password = password;
+            this.group = group;
+            this.isActive = isActive;
+        }
+    }
+
+    /**
+     * AccountDirectory singleton Holder.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static class AccountDirectorySingletonHolder {
+        private final static AccountDirectory instance = new AccountDirectory();
+    }
+}
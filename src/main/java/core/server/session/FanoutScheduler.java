@@ -0,0 +1,369 @@
+package core.server.session;
+
+import core.Settings;
+import core.network.SharedBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.channels.Selector;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deliver the presence notifications to the followers. Small fan-outs are
+ * delivered right away; larger ones are queued on the selector of the
+ * session which changed its state and delivered in slices of at most
+ * {@code Settings.socketFanoutSlice} followers per loop iteration, so the
+ * other sessions of the worker keep being served meanwhile. Fan-outs of
+ * a selector are delivered in order. Followers reading too slowly only
+ * receive the latest notification about each session. While the server
+ * is shedding, fan-outs are queued and delivered once it recovered.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class FanoutScheduler {
+
+    /**
+     * Logger.
+     *
+     * @since 1.4.0
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(FanoutScheduler.class.getName());
+
+    /**
+     * Fan-outs waiting to be delivered, per selector.
+     *
+     * @since 1.4.0
+     */
+    private final Map<Selector, Queue<Fanout>> pendingFanouts;
+
+    /**
+     * Number of queued fan-outs.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicInteger pendingCount;
+
+    /**
+     * Number of completed fan-outs.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicLong completedCount;
+
+    /**
+     * Sum of the fan-out latencies in nanoseconds.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicLong totalLatency;
+
+    /**
+     * Highest fan-out latency in nanoseconds.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicLong maxLatency;
+
+    /**
+     * Default constructor.
+     *
+     * @since 1.4.0
+     */
+    private FanoutScheduler() {
+        this.pendingFanouts = new ConcurrentHashMap<>();
+        this.pendingCount = new AtomicInteger(0);
+        this.completedCount = new AtomicLong(0);
+        this.totalLatency = new AtomicLong(0);
+        this.maxLatency = new AtomicLong(0);
+    }
+
+    /**
+     * Get the instance of {@code FanoutScheduler}.
+     *
+     * @return The instance of {@code FanoutScheduler}
+     * @since 1.4.0
+     */
+    public static FanoutScheduler getInstance() {
+        return FanoutSchedulerSingletonHolder.instance;
+    }
+
+    /**
+     * Send a notification to the given followers. Must be called from the
+     * worker owning the source session.
+     *
+     * @param source    The session which changed its state
+     * @param followers The sessions to notify
+     * @param notifData The notification, without the command prefix
+     * @since 1.4.0
+     */
+    public void publish(final Session source, final Collection<Session> followers, final String notifData) {
+        if (followers.isEmpty()) {
+            return;
+        }
+        final Selector selector = source.network.selector;
+        final Fanout fanout = new Fanout(followers.toArray(new Session[0]), source.network.fd, notifData);
+        final Queue<Fanout> queue = this.pendingFanouts.computeIfAbsent(selector, k -> new ConcurrentLinkedQueue<>());
+        final int sliceSize = Math.max(1, Settings.socketFanoutSlice);
+        final OutputBudget outputBudget = OutputBudget.getInstance();
+        if (outputBudget.isShedding()) {
+            queue.offer(fanout);
+            this.pendingCount.incrementAndGet();
+            outputBudget.onFanoutDeferred();
+        } else if (queue.isEmpty() && fanout.followers.length <= sliceSize) {
+            fanout.deliver(sliceSize);
+            this.__complete(fanout);
+        } else {
+            queue.offer(fanout);
+            this.pendingCount.incrementAndGet();
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Deliver the next slice of the fan-outs queued on the given selector.
+     * Nothing is delivered while the server is shedding. Must be called
+     * from the worker owning the selector, once per loop.
+     *
+     * @param selector The selector
+     * @return {@code true} if some fan-outs can be delivered right away, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean run(final Selector selector) {
+        final Queue<Fanout> queue = this.pendingFanouts.get(selector);
+        if (queue == null || OutputBudget.getInstance().isShedding()) {
+            return false;
+        }
+        int budget = Math.max(1, Settings.socketFanoutSlice);
+        Fanout fanout;
+        while (budget > 0 && (fanout = queue.peek()) != null) {
+            budget -= fanout.deliver(budget);
+            if (fanout.isDone()) {
+                queue.poll();
+                this.pendingCount.decrementAndGet();
+                this.__complete(fanout);
+            }
+        }
+        return !queue.isEmpty();
+    }
+
+    /**
+     * Record the latency of a delivered fan-out.
+     *
+     * @param fanout The delivered fan-out
+     * @since 1.4.0
+     */
+    private void __complete(final Fanout fanout) {
+        final long latency = fanout.lastDelivery - fanout.firstDelivery;
+        this.completedCount.incrementAndGet();
+        this.totalLatency.addAndGet(latency);
+        long max = this.maxLatency.get();
+        while (latency > max && !this.maxLatency.compareAndSet(max, latency)) {
+            max = this.maxLatency.get();
+        }
+    }
+
+    /**
+     * Get the number of fan-outs waiting to be delivered.
+     *
+     * @return The number of queued fan-outs
+     * @since 1.4.0
+     */
+    public int getPendingCount() {
+        return this.pendingCount.get();
+    }
+
+    /**
+     * Get the number of delivered fan-outs.
+     *
+     * @return The number of delivered fan-outs
+     * @since 1.4.0
+     */
+    public long getCompletedCount() {
+        return this.completedCount.get();
+    }
+
+    /**
+     * Get the average time between the delivery to the first and to the
+     * last follower.
+     *
+     * @return The average latency in milliseconds
+     * @since 1.4.0
+     */
+    public double getAverageLatency() {
+        final long count = this.completedCount.get();
+        return count == 0 ? 0 : this.totalLatency.get() / (count * 1000000.0);
+    }
+
+    /**
+     * Get the highest time between the delivery to the first and to the
+     * last follower.
+     *
+     * @return The highest latency in milliseconds
+     * @since 1.4.0
+     */
+    public double getMaxLatency() {
+        return this.maxLatency.get() / 1000000.0;
+    }
+
+    /**
+     * A notification being delivered to its followers.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static final class Fanout {
+
+        /**
+         * The sessions to notify.
+         *
+         * @since 1.4.0
+         */
+        final Session[] followers;
+
+        /**
+         * The file descriptor of the session which changed its state.
+         *
+         * @since 1.4.0
+         */
+        final long sourceFd;
+
+        /**
+         * The notification, without the command prefix.
+         *
+         * @since 1.4.0
+         */
+        final String notifData;
+
+        /**
+         * Index of the next session to notify.
+         *
+         * @since 1.4.0
+         */
+        int next;
+
+        /**
+         * Packet sent to internal sessions, encoded on first use.
+         *
+         * @since 1.4.0
+         */
+        SharedBuffer cmdPacket;
+
+        /**
+         * Packet sent to external sessions, encoded on first use.
+         *
+         * @since 1.4.0
+         */
+        SharedBuffer userCmdPacket;
+
+        /**
+         * Time in nanoseconds of the delivery to the first follower.
+         *
+         * @since 1.4.0
+         */
+        long firstDelivery;
+
+        /**
+         * Time in nanoseconds of the delivery to the last follower.
+         *
+         * @since 1.4.0
+         */
+        long lastDelivery;
+
+        /**
+         * Build a new fan-out.
+         *
+         * @param followers The sessions to notify
+         * @param sourceFd  The file descriptor of the session which changed its state
+         * @param notifData The notification, without the command prefix
+         * @since 1.4.0
+         */
+        Fanout(final Session[] followers, final long sourceFd, final String notifData) {
+            this.followers = followers;
+            this.sourceFd = sourceFd;
+            this.notifData = notifData;
+            this.next = 0;
+        }
+
+        /**
+         * Check if all followers have been notified.
+         *
+         * @return {@code true} if done, otherwise, {@code false}
+         * @since 1.4.0
+         */
+        boolean isDone() {
+            return this.next == this.followers.length;
+        }
+
+        /**
+         * Notify the next followers. Packets are released once the last
+         * follower has been notified.
+         *
+         * @param max The maximal number of followers to notify
+         * @return The number of notified followers
+         * @since 1.4.0
+         */
+        int deliver(final int max) {
+            if (this.next == 0) {
+                this.firstDelivery = System.nanoTime();
+            }
+            final int end = Math.min(this.followers.length, this.next + max);
+            final int count = end - this.next;
+            while (this.next < end) {
+                final Session s = this.followers[this.next];
+                this.followers[this.next] = null;
+                this.next += 1;
+                if (s.isClosed()) {
+                    continue;
+                }
+                if (s.authType == SessionAuthType.EXTERNAL_AUTHENTICATION) {
+                    if (this.userCmdPacket == null) {
+                        this.userCmdPacket = SharedBuffer.of("user_cmd " + this.notifData + "\n");
+                    }
+                    s.addNotification(this.sourceFd, this.userCmdPacket);
+                } else {
+                    if (this.cmdPacket == null) {
+                        this.cmdPacket = SharedBuffer.of("cmd " + this.notifData + "\n");
+                    }
+                    s.addNotification(this.sourceFd, this.cmdPacket);
+                }
+                s.network.registerWriteEvent();
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace(String.format("Send notification to %s (%s): %s",
+                            s.network.address,
+                            s.user.login,
+                            this.notifData));
+                }
+            }
+            if (this.isDone()) {
+                this.lastDelivery = System.nanoTime();
+                if (this.cmdPacket != null) {
+                    this.cmdPacket.release();
+                }
+                if (this.userCmdPacket != null) {
+                    this.userCmdPacket.release();
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * FanoutScheduler singleton Holder.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static class FanoutSchedulerSingletonHolder {
+        private final static FanoutScheduler instance = new FanoutScheduler();
+    }
+}
@@ -0,0 +1,173 @@
+package core.server.session;
+
+import core.Settings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Track the number of bytes queued in the output buffers of all sessions.
+ * Once {@code Settings.socketOutputBudget} is reached, the server start
+ * shedding: expensive commands are rejected and fan-outs are deferred
+ * until the queued bytes drop under {@code Settings.socketOutputBudgetResume}.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class OutputBudget {
+
+    /**
+     * Logger.
+     *
+     * @since 1.4.0
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(OutputBudget.class.getName());
+
+    /**
+     * Number of bytes queued in the output buffers.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicLong queuedBytes;
+
+    /**
+     * Is the server shedding?
+     *
+     * @since 1.4.0
+     */
+    private final AtomicBoolean isShedding;
+
+    /**
+     * Number of expensive commands rejected while shedding.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicLong rejectedCount;
+
+    /**
+     * Number of fan-outs deferred while shedding.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicLong deferredCount;
+
+    /**
+     * Default constructor.
+     *
+     * @since 1.4.0
+     */
+    private OutputBudget() {
+        this.queuedBytes = new AtomicLong(0);
+        this.isShedding = new AtomicBoolean(false);
+        this.rejectedCount = new AtomicLong(0);
+        this.deferredCount = new AtomicLong(0);
+    }
+
+    /**
+     * Get the instance of {@code OutputBudget}.
+     *
+     * @return The instance of {@code OutputBudget}
+     * @since 1.4.0
+     */
+    public static OutputBudget getInstance() {
+        return OutputBudgetSingletonHolder.instance;
+    }
+
+    /**
+     * Update the number of queued bytes and start or stop shedding.
+     *
+     * @param delta The number of bytes queued (positive) or sent and dropped (negative)
+     * @since 1.4.0
+     */
+    void add(final long delta) {
+        final long total = this.queuedBytes.addAndGet(delta);
+        if (total >= Settings.socketOutputBudget) {
+            if (this.isShedding.compareAndSet(false, true)) {
+                LOG.warn("Output budget exceeded ({} bytes queued), start shedding", total);
+            }
+        } else if (total <= Settings.socketOutputBudgetResume) {
+            if (this.isShedding.compareAndSet(true, false)) {
+                LOG.info("Output budget recovered ({} bytes queued), stop shedding", total);
+            }
+        }
+    }
+
+    /**
+     * Check if the server is shedding.
+     *
+     * @return {@code true} if shedding, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean isShedding() {
+        return this.isShedding.get();
+    }
+
+    /**
+     * Check if an expensive command must be rejected. Rejected commands
+     * are counted.
+     *
+     * @return {@code true} if the command must be rejected, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean rejectExpensive() {
+        if (this.isShedding.get()) {
+            this.rejectedCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Count a fan-out deferred because the server is shedding.
+     *
+     * @since 1.4.0
+     */
+    void onFanoutDeferred() {
+        this.deferredCount.incrementAndGet();
+    }
+
+    /**
+     * Get the number of bytes queued in the output buffers of all sessions.
+     * Shared data is counted once per session.
+     *
+     * @return The number of queued bytes
+     * @since 1.4.0
+     */
+    public long getQueuedBytes() {
+        return this.queuedBytes.get();
+    }
+
+    /**
+     * Get the number of expensive commands rejected while shedding.
+     *
+     * @return The number of rejected commands
+     * @since 1.4.0
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    /**
+     * Get the number of fan-outs deferred while shedding.
+     *
+     * @return The number of deferred fan-outs
+     * @since 1.4.0
+     */
+    public long getDeferredCount() {
+        return this.deferredCount.get();
+    }
+
+    /**
+     * OutputBudget singleton Holder.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static class OutputBudgetSingletonHolder {
+        private final static OutputBudget instance = new OutputBudget();
+    }
+}
@@ -0,0 +1,27 @@
+package core.server.session;
+
+import core.network.ByteRingBuffer;
+
+/**
+ * Produce the output of a command step by step, as the socket drains,
+ * instead of rendering the whole answer at once.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @see Session#streamOutput(OutputCursor)
+ * @since 1.4.0
+ */
+public interface OutputCursor {
+
+    /**
+     * Append the next data to the output buffer, until the buffer reach
+     * the given size or no more data is available. The last call must
+     * append the end of the answer.
+     *
+     * @param outputBuffer The output buffer to fill
+     * @param limit        The size in bytes up to which the buffer can be filled
+     * @return {@code true} if the whole answer has been written, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    boolean fill(ByteRingBuffer outputBuffer, int limit);
+}
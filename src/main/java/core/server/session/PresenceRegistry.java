@@ -0,0 +1,138 @@
+package core.server.session;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the presence subscriptions. It keep the sessions watching
+ * each login and, in reverse, the logins watched by each session, so
+ * subscribing or removing a session only cost the size of its own watch
+ * list. This class can be used from any worker thread.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class PresenceRegistry {
+
+    /**
+     * The sessions watching each login.
+     *
+     * @since 1.4.0
+     */
+    private final Map<String, Set<Session>> watchersByLogin;
+
+    /**
+     * The logins watched by each session.
+     *
+     * @since 1.4.0
+     */
+    private final Map<Session, Set<String>> watchedBySession;
+
+    /**
+     * Default constructor.
+     *
+     * @since 1.4.0
+     */
+    public PresenceRegistry() {
+        this.watchersByLogin = new ConcurrentHashMap<>();
+        this.watchedBySession = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Subscribe a session to the state changes of the given login.
+     *
+     * @param usrSession The watching session
+     * @param login      The login to watch
+     * @since 1.4.0
+     */
+    public void watch(final Session usrSession, final String login) {
+        this.watchedBySession.computeIfAbsent(usrSession, k -> ConcurrentHashMap.newKeySet()).add(login);
+        this.watchersByLogin.compute(login, (k, watchers) -> {
+            final Set<Session> loginWatchers = watchers != null ? watchers : ConcurrentHashMap.newKeySet();
+            loginWatchers.add(usrSession);
+            return loginWatchers;
+        });
+    }
+
+    /**
+     * Unsubscribe a session from the state changes of the given login.
+     *
+     * @param usrSession The watching session
+     * @param login      The watched login
+     * @since 1.4.0
+     */
+    public void unwatch(final Session usrSession, final String login) {
+        final Set<String> watched = this.watchedBySession.get(usrSession);
+        if (watched != null) {
+            watched.remove(login);
+        }
+        this.__removeWatcher(login, usrSession);
+    }
+
+    /**
+     * Unsubscribe a session from all the logins it watch.
+     *
+     * @param usrSession The watching session
+     * @since 1.4.0
+     */
+    public void unwatchAll(final Session usrSession) {
+        final Set<String> watched = this.watchedBySession.remove(usrSession);
+        if (watched != null) {
+            for (final String login : watched) {
+                this.__removeWatcher(login, usrSession);
+            }
+        }
+    }
+
+    /**
+     * Remove a session from the watchers of a login. The login entry is
+     * dropped once no session watch it anymore.
+     *
+     * @param login      The watched login
+     * @param usrSession The watching session
+     * @since 1.4.0
+     */
+    private void __removeWatcher(final String login, final Session usrSession) {
+        this.watchersByLogin.computeIfPresent(login, (k, watchers) -> {
+            watchers.remove(usrSession);
+            return watchers.isEmpty() ? null : watchers;
+        });
+    }
+
+    /**
+     * Get the sessions watching the given login.
+     *
+     * @param login The watched login
+     * @return The watching sessions, can be empty
+     * @since 1.4.0
+     */
+    public Set<Session> getWatchers(final String login) {
+        final Set<Session> watchers = this.watchersByLogin.get(login);
+        return watchers != null ? Collections.unmodifiableSet(watchers) : Collections.emptySet();
+    }
+
+    /**
+     * Get the logins watched by the given session.
+     *
+     * @param usrSession The watching session
+     * @return The watched logins, can be empty
+     * @since 1.4.0
+     */
+    public Set<String> getWatched(final Session usrSession) {
+        final Set<String> watched = this.watchedBySession.get(usrSession);
+        return watched != null ? Collections.unmodifiableSet(watched) : Collections.emptySet();
+    }
+
+    /**
+     * Get the number of logins watched by at least one session.
+     *
+     * @return The number of watched logins
+     * @since 1.4.0
+     */
+    public int getWatchedLoginCount() {
+        return this.watchersByLogin.size();
+    }
+}
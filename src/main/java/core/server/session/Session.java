@@ -1,29 +1,50 @@
 package core.server.session;
 
+import core.Settings;
+import core.network.ByteRingBuffer;
 import core.network.DisconnectReason;
+import core.network.LineFramer;
+import core.network.SharedBuffer;
 
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.List;
-import java.util.regex.Pattern;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * {@code Session} contain all information about an active session.
  *
  * @author Thibault Meyer
- * @version 1.2.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public class Session {
 
     /**
-     * Chunk size.
+     * Initial capacity of the output buffer.
      *
-     * @since 1.2.0
+     * @since 1.4.0
+     */
+    private static final int OUTPUT_BUFFER_CAPACITY = 512;
+
+    /**
+     * Number of messages dropped because the receiver was too slow.
+     *
+     * @since 1.4.0
+     */
+    private static final AtomicLong DROPPED_MESSAGE_COUNT = new AtomicLong(0);
+
+    /**
+     * Number of notifications replaced by a newer one because the receiver
+     * was too slow.
+     *
+     * @since 1.4.0
      */
-    private static final int CHUNK_SIZE = 256;
+    private static final AtomicLong COALESCED_NOTIFICATION_COUNT = new AtomicLong(0);
 
     /**
      * Network information.
@@ -40,25 +61,25 @@ public class Session {
     public final SessionUser user;
 
     /**
-     * Input buffer.
+     * Input buffer, split in lines as data is received.
      *
      * @since 1.0.0
      */
-    public final List<String> inputBuffer;
+    public final LineFramer inputBuffer;
 
     /**
-     * Output buffer.
+     * Output buffer. Must only be accessed while holding the session lock.
      *
      * @since 1.0.0
      */
-    public final List<String> outputBuffer;
+    public final ByteRingBuffer outputBuffer;
 
     /**
-     * Compiled pattern used to create chunk.
+     * Rate limit of the commands executed by this session.
      *
-     * @since 1.2.0
+     * @since 1.4.0
      */
-    private final Pattern splitPattern;
+    public final TokenBucket commandBucket;
 
     /**
      * Random hash generated at connection.
@@ -102,6 +123,81 @@ public class Session {
      */
     public Instant lastPingReceived;
 
+    /**
+     * Is this session already waiting in the ready sessions queue?
+     *
+     * @since 1.4.0
+     */
+    public final AtomicBoolean isQueued;
+
+    /**
+     * Is this session waiting for an asynchronous operation? Received
+     * lines are kept in the input buffer meanwhile.
+     *
+     * @since 1.4.0
+     */
+    private volatile boolean isSuspended;
+
+    /**
+     * Has this session been disconnected? Once set, all writes to the
+     * output buffer are rejected.
+     *
+     * @since 1.4.0
+     */
+    private volatile boolean isClosed;
+
+    /**
+     * Called when the session is resumed.
+     *
+     * @since 1.4.0
+     */
+    private Consumer<Session> resumeHandler;
+
+    /**
+     * Incremented each time the user or network information is modified.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicInteger version;
+
+    /**
+     * The last built descriptor of this session.
+     *
+     * @since 1.4.0
+     */
+    private volatile SessionDescriptor descriptor;
+
+    /**
+     * Cursor producing the answer being streamed, or {@code null}.
+     *
+     * @since 1.4.0
+     */
+    private OutputCursor outputCursor;
+
+    /**
+     * Is the output buffer above the high watermark? Set once the high
+     * watermark is reached and cleared once the buffer drained under the
+     * low watermark.
+     *
+     * @since 1.4.0
+     */
+    private boolean isOutputOverloaded;
+
+    /**
+     * Latest notification of each session, kept while the output buffer
+     * is above the high watermark. Lazily created.
+     *
+     * @since 1.4.0
+     */
+    private Map<Long, SharedBuffer> coalescedNotifications;
+
+    /**
+     * Size of the output buffer last reported to the {@code OutputBudget}.
+     *
+     * @since 1.4.0
+     */
+    private int accountedOutputSize;
+
     /**
      * Default constructor.
      *
@@ -111,68 +207,362 @@ public class Session {
         this.network = new SessionNetwork();
         this.user = new SessionUser();
         this.stageLevel = SessionStageLevel.NOT_AUTHENTICATED;
-        this.inputBuffer = new ArrayList<>();
-        this.outputBuffer = new ArrayList<>();
+        this.inputBuffer = new LineFramer(Settings.socketMaxLineLength, Settings.socketMaxLineLength * 4);
+        this.outputBuffer = new ByteRingBuffer(Session.OUTPUT_BUFFER_CAPACITY);
+        this.commandBucket = new TokenBucket(Settings.socketRateBurst, Settings.socketRateRefill);
         this.lastPingSent = Instant.now();
         this.lastPingReceived = Instant.now();
-        this.splitPattern = Pattern.compile("(?<=\\G.{" + Session.CHUNK_SIZE + "})");
+        this.isQueued = new AtomicBoolean(false);
+        this.isSuspended = false;
+        this.isClosed = false;
+        this.version = new AtomicInteger(0);
     }
 
     /**
-     * Get the next complete command payload.
+     * Add data to the output buffer. Data is encoded once into the output
+     * ring buffer. This method can be called from any worker thread.
      *
-     * @return The payload without the "\n" end of line
-     * @since 1.0.0
+     * @param data The data to append to the output buffer
+     * @since 1.2.0
      */
-    public String[] getNextPayload() {
-        String payload = "";
-        boolean nextPayloadFound = false;
-
-        while (!this.inputBuffer.isEmpty()) {
-            final String data = this.inputBuffer.remove(0);
-            if (data.contains("\n")) {
-                nextPayloadFound = true;
-                payload += data.substring(0, data.indexOf('\n'));
-                if (data.length() != (data.indexOf('\n') + 1)) {
-                    this.inputBuffer.add(0, data.substring(data.indexOf('\n') + 1));
+    public synchronized void addOutputDataAsChunk(final String data) {
+        if (this.__isWritable()) {
+            this.outputBuffer.write(data);
+            this.__checkOutputSize();
+        }
+    }
+
+    /**
+     * Add data to the output buffer. Data is encoded once into the output
+     * ring buffer. This method can be called from any worker thread.
+     *
+     * @param data The collection of data to append to the output buffer
+     * @since 1.2.0
+     */
+    public synchronized void addOutputDataAsChunk(final Collection<? extends String> data) {
+        if (this.__isWritable()) {
+            for (final String s : data) {
+                this.outputBuffer.write(s);
+            }
+            this.__checkOutputSize();
+        }
+    }
+
+    /**
+     * Add shared data to the output buffer. The data is appended by
+     * reference, without copy. This method can be called from any worker
+     * thread.
+     *
+     * @param data The shared data to append to the output buffer
+     * @since 1.4.0
+     */
+    public synchronized void addOutputData(final SharedBuffer data) {
+        if (this.__isWritable()) {
+            this.outputBuffer.write(data);
+            this.__checkOutputSize();
+        }
+    }
+
+    /**
+     * Add encoded data to the output buffer. This method can be called
+     * from any worker thread.
+     *
+     * @param data The data to append to the output buffer
+     * @since 1.4.0
+     */
+    public synchronized void addOutputData(final byte[] data) {
+        if (this.__isWritable()) {
+            this.outputBuffer.write(data);
+            this.__checkOutputSize();
+        }
+    }
+
+    /**
+     * Add a notification about the given session to the output buffer.
+     * While the output buffer is above the high watermark, only the latest
+     * notification about each session is kept; they are sent once the
+     * buffer drained under the low watermark. This method can be called
+     * from any worker thread.
+     *
+     * @param sourceFd The file descriptor of the session the notification is about
+     * @param data     The shared notification
+     * @since 1.4.0
+     */
+    public synchronized void addNotification(final long sourceFd, final SharedBuffer data) {
+        if (this.__isWritable()) {
+            if (this.isOutputOverloaded) {
+                if (this.coalescedNotifications == null) {
+                    this.coalescedNotifications = new LinkedHashMap<>();
+                }
+                final SharedBuffer previous = this.coalescedNotifications.put(sourceFd, data.retain());
+                if (previous != null) {
+                    previous.release();
+                    Session.COALESCED_NOTIFICATION_COUNT.incrementAndGet();
                 }
-                break;
             } else {
-                payload += data;
+                this.outputBuffer.write(data);
+                this.__checkOutputSize();
             }
         }
-        if (!nextPayloadFound) {
-            this.inputBuffer.add(0, payload);
-            return null;
+    }
+
+    /**
+     * Add a message sent by another session to the output buffer. The
+     * message is dropped while the output buffer is above the high
+     * watermark. This method can be called from any worker thread.
+     *
+     * @param data The message
+     * @return {@code true} if the message has been added, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public synchronized boolean addMessage(final String data) {
+        if (!this.__isWritable()) {
+            return false;
         }
-        return payload.isEmpty() ? null : payload.trim().split("\\s+");
+        if (this.isOutputOverloaded) {
+            Session.DROPPED_MESSAGE_COUNT.incrementAndGet();
+            return false;
+        }
+        this.outputBuffer.write(data);
+        this.__checkOutputSize();
+        return true;
     }
 
     /**
-     * Add data to the output buffer. Data will be split of n part of
-     * size defined by {@code Session.CHUNK_SIZE}.
+     * Check if data can still be added to the output buffer.
      *
-     * @param data The data to append to the output buffer
-     * @since 1.2.0
+     * @return {@code true} if the session is neither disconnecting nor closed, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    private boolean __isWritable() {
+        return this.disconnectReason == null && !this.isClosed;
+    }
+
+    /**
+     * Update the overload state of the output buffer. The session is
+     * disconnected as soon as the output buffer reach the maximal size.
+     *
+     * @since 1.4.0
      */
-    public void addOutputDataAsChunk(final String data) {
-        if (this.disconnectReason == null) {
-            Collections.addAll(this.outputBuffer, splitPattern.split(data));
+    private void __checkOutputSize() {
+        this.__accountOutput();
+        final int size = this.outputBuffer.size();
+        if (size >= Settings.socketOutputMaxSize) {
+            this.disconnectReason = DisconnectReason.SLOW_CONSUMER;
+            this.network.connection.disconnect(DisconnectReason.SLOW_CONSUMER);
+        } else if (size >= Settings.socketOutputHighWatermark) {
+            this.isOutputOverloaded = true;
         }
     }
 
     /**
-     * Add data to the output buffer. Data will be split of n part of
-     * size defined by {@code Session.CHUNK_SIZE}.
+     * Report the change of the output buffer size to the global output
+     * budget.
      *
-     * @param data The collection of data to append to the output buffer
-     * @since 1.2.0
+     * @since 1.4.0
      */
-    public void addOutputDataAsChunk(final Collection<? extends String> data) {
-        if (this.disconnectReason == null) {
-            for (final String s : data) {
-                Collections.addAll(this.outputBuffer, splitPattern.split(s));
+    private void __accountOutput() {
+        final int size = this.outputBuffer.size();
+        if (size != this.accountedOutputSize) {
+            OutputBudget.getInstance().add(size - this.accountedOutputSize);
+            this.accountedOutputSize = size;
+        }
+    }
+
+    /**
+     * Send the coalesced notifications once the output buffer drained
+     * under the low watermark.
+     *
+     * @since 1.4.0
+     */
+    private void __checkOutputDrained() {
+        if (this.isOutputOverloaded && this.outputBuffer.size() <= Settings.socketOutputLowWatermark) {
+            this.isOutputOverloaded = false;
+            if (this.coalescedNotifications != null) {
+                for (final SharedBuffer data : this.coalescedNotifications.values()) {
+                    this.outputBuffer.write(data);
+                    data.release();
+                }
+                this.coalescedNotifications = null;
+                this.__checkOutputSize();
             }
         }
     }
+
+    /**
+     * Get the number of messages dropped because the receiver was too slow.
+     *
+     * @return The number of dropped messages
+     * @since 1.4.0
+     */
+    public static long getDroppedMessageCount() {
+        return Session.DROPPED_MESSAGE_COUNT.get();
+    }
+
+    /**
+     * Get the number of notifications replaced by a newer one because the
+     * receiver was too slow.
+     *
+     * @return The number of coalesced notifications
+     * @since 1.4.0
+     */
+    public static long getCoalescedNotificationCount() {
+        return Session.COALESCED_NOTIFICATION_COUNT.get();
+    }
+
+    /**
+     * Close this session. All data waiting to be sent is dropped and
+     * released from the {@code OutputBudget}, and further writes are
+     * rejected. Must be called once the connection is disconnected.
+     *
+     * @since 1.4.0
+     */
+    public synchronized void close() {
+        this.isClosed = true;
+        this.outputBuffer.clear();
+        this.outputCursor = null;
+        if (this.coalescedNotifications != null) {
+            for (final SharedBuffer data : this.coalescedNotifications.values()) {
+                data.release();
+            }
+            this.coalescedNotifications = null;
+        }
+        this.__accountOutput();
+    }
+
+    /**
+     * Check if this session has been closed.
+     *
+     * @return {@code true} if closed, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean isClosed() {
+        return this.isClosed;
+    }
+
+    /**
+     * Check if some data is waiting to be sent.
+     *
+     * @return {@code true} if the output buffer is not empty or an answer is being streamed, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public synchronized boolean hasPendingOutput() {
+        return !this.outputBuffer.isEmpty() || this.outputCursor != null;
+    }
+
+    /**
+     * Stream an answer into the output buffer. The first data is written
+     * right away; if the answer does not fit, the remaining data is written
+     * as the socket drains and the session is suspended until the whole
+     * answer has been written. Must be called from the worker owning the
+     * session.
+     *
+     * @param cursor The cursor producing the answer
+     * @since 1.4.0
+     */
+    public synchronized void streamOutput(final OutputCursor cursor) {
+        if (this.__isWritable()) {
+            if (!cursor.fill(this.outputBuffer, Settings.socketWriteBudget)) {
+                this.outputCursor = cursor;
+                this.suspend();
+            }
+            this.__accountOutput();
+        }
+    }
+
+    /**
+     * Write the next data of the answer being streamed, if any, and the
+     * coalesced notifications once the output buffer drained. The session
+     * is resumed once the whole answer has been written. Must be called
+     * from the worker owning the session, after each write to the socket
+     * so the sent bytes are reported to the {@code OutputBudget}.
+     *
+     * @return {@code true} if some data is waiting to be sent, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public synchronized boolean pumpOutput() {
+        this.__checkOutputDrained();
+        if (this.outputCursor != null) {
+            if (this.disconnectReason != null) {
+                this.outputCursor = null;
+            } else if (this.outputBuffer.size() < Settings.socketWriteBudget
+                    && this.outputCursor.fill(this.outputBuffer, Settings.socketWriteBudget)) {
+                this.outputCursor = null;
+                this.resume();
+            }
+        }
+        this.__accountOutput();
+        return !this.outputBuffer.isEmpty();
+    }
+
+    /**
+     * Set the handler called when the session is resumed.
+     *
+     * @param resumeHandler The handler
+     * @since 1.4.0
+     */
+    public void setResumeHandler(final Consumer<Session> resumeHandler) {
+        this.resumeHandler = resumeHandler;
+    }
+
+    /**
+     * Stop executing the commands of this session until {@code resume}
+     * is called.
+     *
+     * @since 1.4.0
+     */
+    public void suspend() {
+        this.isSuspended = true;
+    }
+
+    /**
+     * Resume the execution of the commands of this session. Must be called
+     * from the worker owning the session.
+     *
+     * @since 1.4.0
+     */
+    public void resume() {
+        this.isSuspended = false;
+        if (this.resumeHandler != null) {
+            this.resumeHandler.accept(this);
+        }
+    }
+
+    /**
+     * Check if this session is suspended.
+     *
+     * @return {@code true} if suspended, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean isSuspended() {
+        return this.isSuspended;
+    }
+
+    /**
+     * Get the descriptor of this session. The descriptor is only rebuilt
+     * when the session has been modified since the last call.
+     *
+     * @return The descriptor
+     * @since 1.4.0
+     */
+    public SessionDescriptor getDescriptor() {
+        final int currentVersion = this.version.get();
+        SessionDescriptor sessionDescriptor = this.descriptor;
+        if (sessionDescriptor == null || sessionDescriptor.version != currentVersion) {
+            sessionDescriptor = new SessionDescriptor(this, currentVersion);
+            this.descriptor = sessionDescriptor;
+        }
+        return sessionDescriptor;
+    }
+
+    /**
+     * Notify that the user or network information have been modified. Must
+     * be called after each modification of the state, location, group or
+     * any other information used by the descriptor.
+     *
+     * @since 1.4.0
+     */
+    public void invalidateDescriptor() {
+        this.version.incrementAndGet();
+    }
 }
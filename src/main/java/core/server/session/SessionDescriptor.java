@@ -0,0 +1,111 @@
+package core.server.session;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Pre-rendered description of a session, as used by {@code list_users},
+ * {@code who}, {@code msg_user} and the state notifications. It is built
+ * on first use and rebuilt once the session has been modified.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @see Session#getDescriptor()
+ * @since 1.4.0
+ */
+public final class SessionDescriptor {
+
+    /**
+     * The session version this descriptor has been built from.
+     *
+     * @since 1.4.0
+     */
+    final int version;
+
+    /**
+     * The line sent by {@code list_users}.
+     *
+     * @since 1.4.0
+     */
+    public final byte[] listUsersLine;
+
+    /**
+     * Header used to notify other sessions, without the command prefix:
+     * {@code fd:user:trust/trust:login@ip:os:location:group}.
+     *
+     * @since 1.4.0
+     */
+    public final String notifHeader;
+
+    /**
+     * Header used to send messages, without the command prefix:
+     * {@code fd:user:trust/trust:login@ip:os:location:ext}.
+     *
+     * @since 1.4.0
+     */
+    public final String msgHeader;
+
+    /**
+     * Beginning of the {@code who} entry, up to the current timestamp.
+     *
+     * @since 1.4.0
+     */
+    public final String whoPrefix;
+
+    /**
+     * End of the {@code who} entry, after the current timestamp.
+     *
+     * @since 1.4.0
+     */
+    public final String whoSuffix;
+
+    /**
+     * Build the descriptor of the given session.
+     *
+     * @param usrSession The session
+     * @param version    The session version
+     * @since 1.4.0
+     */
+    SessionDescriptor(final Session usrSession, final int version) {
+        final SessionUser user = usrSession.user;
+        final SessionNetwork network = usrSession.network;
+        this.version = version;
+        this.listUsersLine = String.format("%d %s %s %d %d %d %d %s %s %s %s:%d %s\n",
+                network.fd,
+                user.login,
+                network.ip,
+                user.loginTime,
+                user.stateModifiedAt,
+                user.trustLevelClient,
+                user.trustLevelUser,
+                user.operatingSystem,
+                user.location,
+                user.group,
+                user.state,
+                user.stateModifiedAt,
+                user.clientName).getBytes(StandardCharsets.UTF_8);
+        final String identity = String.format("%d:user:%d/%d:%s@%s:%s:%s",
+                network.fd,
+                user.trustLevelClient,
+                user.trustLevelUser,
+                user.login,
+                network.ip,
+                user.operatingSystem,
+                user.location);
+        this.notifHeader = identity + ":" + user.group;
+        this.msgHeader = identity + ":ext";
+        this.whoPrefix = String.format("%d %s %s %d ",
+                network.fd,
+                user.login,
+                network.ip,
+                user.loginTime);
+        this.whoSuffix = String.format(" %d %d %s %s %s %s:%d %s",
+                user.trustLevelClient,
+                user.trustLevelUser,
+                user.operatingSystem,
+                user.location,
+                user.group,
+                user.state,
+                user.stateModifiedAt,
+                user.clientName);
+    }
+}
@@ -1,9 +1,10 @@
 package core.server.session;
 
+import core.network.NIOConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.channels.ClosedChannelException;
+import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
@@ -13,7 +14,7 @@ import java.nio.channels.SocketChannel;
  * an active session.
  *
  * @author Thibault Meyer
- * @version 1.0.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public class SessionNetwork {
@@ -25,6 +26,13 @@ public class SessionNetwork {
      */
     private static final Logger LOG = LoggerFactory.getLogger(SessionNetwork.class.getName());
 
+    /**
+     * Network connection of this session.
+     *
+     * @since 1.4.0
+     */
+    public NIOConnection connection;
+
     /**
      * Socket used by this session.
      *
@@ -74,6 +82,13 @@ public class SessionNetwork {
      */
     private boolean isWriteRegistered;
 
+    /**
+     * Determine is the "Read" event is currently paused.
+     *
+     * @since 1.4.0
+     */
+    private boolean isReadPaused;
+
     /**
      * Default constructor.
      *
@@ -81,20 +96,51 @@ public class SessionNetwork {
      */
     public SessionNetwork() {
         this.isWriteRegistered = false;
+        this.isReadPaused = false;
+    }
+
+    /**
+     * Compute the NIO interest set matching the current state.
+     *
+     * @return The interest set
+     * @since 1.4.0
+     */
+    private int __interestOps() {
+        return (this.isReadPaused ? 0 : SelectionKey.OP_READ) | (this.isWriteRegistered ? SelectionKey.OP_WRITE : 0);
+    }
+
+    /**
+     * Apply the current interest set on the selection key.
+     *
+     * @return {@code true} if the interest set has been applied, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    private boolean __applyInterestOps() {
+        final SelectionKey key = this.connection.getKey();
+        if (key != null) {
+            try {
+                key.interestOps(this.__interestOps());
+                return true;
+            } catch (CancelledKeyException e) {
+                LOG.warn("can't update registered events", e);
+            }
+        }
+        return false;
     }
 
     /**
-     * Register the "Write" event for the next NIO events.
+     * Register the "Write" event for the next NIO events. This method can
+     * be called from any worker thread, the owning selector will be woken up.
      *
      * @since 1.0.0
      */
-    public void registerWriteEvent() {
+    public synchronized void registerWriteEvent() {
         if (!this.isWriteRegistered) {
-            try {
-                this.socket.register(this.selector, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
-                this.isWriteRegistered = true;
-            } catch (ClosedChannelException e) {
-                LOG.warn("can't register write event", e);
+            this.isWriteRegistered = true;
+            if (this.__applyInterestOps()) {
+                this.selector.wakeup();
+            } else {
+                this.isWriteRegistered = false;
             }
         }
     }
@@ -104,14 +150,35 @@ public class SessionNetwork {
      *
      * @since 1.0.0
      */
-    public void unregisterWriteEvent() {
+    public synchronized void unregisterWriteEvent() {
         if (this.isWriteRegistered) {
-            try {
-                this.socket.register(this.selector, SelectionKey.OP_READ);
-                this.isWriteRegistered = false;
-            } catch (ClosedChannelException e) {
-                LOG.warn("can't unregister write event", e);
-            }
+            this.isWriteRegistered = false;
+            this.__applyInterestOps();
+        }
+    }
+
+    /**
+     * Stop listening for the "Read" event, used when the input buffer
+     * is full.
+     *
+     * @since 1.4.0
+     */
+    public synchronized void pauseReadEvent() {
+        if (!this.isReadPaused) {
+            this.isReadPaused = true;
+            this.__applyInterestOps();
+        }
+    }
+
+    /**
+     * Listen again for the "Read" event.
+     *
+     * @since 1.4.0
+     */
+    public synchronized void resumeReadEvent() {
+        if (this.isReadPaused) {
+            this.isReadPaused = false;
+            this.__applyInterestOps();
         }
     }
 }
@@ -0,0 +1,194 @@
+package core.server.session;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Index of the connected sessions. All sessions are indexed by file
+ * descriptor and the authenticated ones by login too. A session is
+ * added once connected (and once authenticated for the login index) and
+ * removed when disconnected, so a session is obtained without scanning
+ * all connected sessions.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class SessionRegistry {
+
+    /**
+     * The authenticated sessions, indexed by login.
+     *
+     * @since 1.4.0
+     */
+    private final Map<String, List<Session>> sessionsByLogin;
+
+    /**
+     * The connected sessions, indexed by file descriptor.
+     *
+     * @since 1.4.0
+     */
+    private final SessionTable sessionsByFd;
+
+    /**
+     * Default constructor.
+     *
+     * @since 1.4.0
+     */
+    private SessionRegistry() {
+        this.sessionsByLogin = new ConcurrentHashMap<>();
+        this.sessionsByFd = new SessionTable();
+    }
+
+    /**
+     * Get the instance of {@code SessionRegistry}.
+     *
+     * @return The instance of {@code SessionRegistry}
+     * @since 1.4.0
+     */
+    public static SessionRegistry getInstance() {
+        return SessionRegistrySingletonHolder.instance;
+    }
+
+    /**
+     * Add a connected session. The session is indexed by its file
+     * descriptor.
+     *
+     * @param usrSession The session to add
+     * @since 1.4.0
+     */
+    public void add(final Session usrSession) {
+        this.sessionsByFd.put(usrSession.network.fd, usrSession);
+    }
+
+    /**
+     * Remove a disconnected session from all indexes.
+     *
+     * @param usrSession The session to remove
+     * @since 1.4.0
+     */
+    public void remove(final Session usrSession) {
+        this.sessionsByFd.remove(usrSession.network.fd);
+        if (usrSession.user.login != null) {
+            this.removeLogin(usrSession.user.login, usrSession);
+        }
+    }
+
+    /**
+     * Get the connected session with the given file descriptor.
+     *
+     * @param fd The file descriptor
+     * @return The session, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    public Session getSession(final long fd) {
+        return this.sessionsByFd.get(fd);
+    }
+
+    /**
+     * Get all connected sessions. The returned collection is a read only
+     * view, iterators work on a snapshot.
+     *
+     * @return The connected sessions
+     * @since 1.4.0
+     */
+    public Collection<Session> getSessions() {
+        return this.sessionsByFd.values();
+    }
+
+    /**
+     * Get the number of connected sessions.
+     *
+     * @return The number of connected sessions
+     * @since 1.4.0
+     */
+    public int getSessionCount() {
+        return this.sessionsByFd.size();
+    }
+
+    /**
+     * Add an authenticated session to the login index. The session is not
+     * added if the login already have {@code maxSessions} sessions.
+     *
+     * @param login       The login of the session
+     * @param usrSession  The session to add
+     * @param maxSessions The maximal number of sessions allowed for this login
+     * @return {@code true} if the session has been added, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean addLogin(final String login, final Session usrSession, final int maxSessions) {
+        final boolean[] isAdded = {false};
+        this.sessionsByLogin.compute(login, (k, sessions) -> {
+            final List<Session> loginSessions = sessions != null ? sessions : new CopyOnWriteArrayList<>();
+            if (loginSessions.size() < maxSessions) {
+                loginSessions.add(usrSession);
+                isAdded[0] = true;
+            }
+            return loginSessions.isEmpty() ? null : loginSessions;
+        });
+        return isAdded[0];
+    }
+
+    /**
+     * Remove a session from the login index.
+     *
+     * @param login      The login of the session
+     * @param usrSession The session to remove
+     * @since 1.4.0
+     */
+    public void removeLogin(final String login, final Session usrSession) {
+        this.sessionsByLogin.computeIfPresent(login, (k, sessions) -> {
+            sessions.remove(usrSession);
+            return sessions.isEmpty() ? null : sessions;
+        });
+    }
+
+    /**
+     * Get the authenticated sessions of the given login.
+     *
+     * @param login The login
+     * @return The sessions, can be empty
+     * @since 1.4.0
+     */
+    public List<Session> getSessions(final String login) {
+        final List<Session> sessions = this.sessionsByLogin.get(login);
+        return sessions != null ? Collections.unmodifiableList(sessions) : Collections.emptyList();
+    }
+
+    /**
+     * Get the number of authenticated sessions of the given login.
+     *
+     * @param login The login
+     * @return The number of sessions
+     * @since 1.4.0
+     */
+    public int getSessionCount(final String login) {
+        final List<Session> sessions = this.sessionsByLogin.get(login);
+        return sessions != null ? sessions.size() : 0;
+    }
+
+    /**
+     * Get the number of distinct logins having at least one session.
+     *
+     * @return The number of distinct logins
+     * @since 1.4.0
+     */
+    public int getLoginCount() {
+        return this.sessionsByLogin.size();
+    }
+
+    /**
+     * SessionRegistry singleton Holder.
+     *
+     * @author Thibault Meyer
+     * @version 1.4.0
+     * @since 1.4.0
+     */
+    private static class SessionRegistrySingletonHolder {
+        private final static SessionRegistry instance = new SessionRegistry();
+    }
+}
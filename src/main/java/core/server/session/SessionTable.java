@@ -0,0 +1,304 @@
+package core.server.session;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open addressing hash table of sessions keyed by their file descriptor.
+ * Keys are stored as primitive {@code long} (no boxing), collisions are
+ * resolved with linear probing and removals use backward shifting, so no
+ * tombstone is left behind. The key {@code 0} is reserved to mark empty
+ * slots. Lookups are lock-free as long as no writer is active.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class SessionTable {
+
+    /**
+     * Initial number of slots, must be a power of two.
+     *
+     * @since 1.4.0
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The key used to mark an empty slot.
+     *
+     * @since 1.4.0
+     */
+    private static final long EMPTY_KEY = 0;
+
+    /**
+     * Lock protecting the slots.
+     *
+     * @since 1.4.0
+     */
+    private final StampedLock lock;
+
+    /**
+     * Read only view of the sessions.
+     *
+     * @since 1.4.0
+     */
+    private final Collection<Session> values;
+
+    /**
+     * The keys of each slot.
+     *
+     * @since 1.4.0
+     */
+    private long[] keys;
+
+    /**
+     * The sessions of each slot.
+     *
+     * @since 1.4.0
+     */
+    private Session[] sessions;
+
+    /**
+     * The number of sessions in the table.
+     *
+     * @since 1.4.0
+     */
+    private volatile int size;
+
+    /**
+     * Default constructor.
+     *
+     * @since 1.4.0
+     */
+    public SessionTable() {
+        this.lock = new StampedLock();
+        this.keys = new long[SessionTable.INITIAL_CAPACITY];
+        this.sessions = new Session[SessionTable.INITIAL_CAPACITY];
+        this.size = 0;
+        this.values = new AbstractCollection<Session>() {
+
+            @Override
+            public Iterator<Session> iterator() {
+                return SessionTable.this.__snapshot().iterator();
+            }
+
+            @Override
+            public int size() {
+                return SessionTable.this.size;
+            }
+        };
+    }
+
+    /**
+     * Get the slot where the search of the given key starts.
+     *
+     * @param key  The key
+     * @param mask The table mask
+     * @return The slot index
+     * @since 1.4.0
+     */
+    private static int __slot(final long key, final int mask) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    /**
+     * Find the session with the given key in the given slots.
+     *
+     * @param keys     The keys of each slot
+     * @param sessions The sessions of each slot
+     * @param key      The key to find
+     * @return The session, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    private static Session __find(final long[] keys, final Session[] sessions, final long key) {
+        final int mask = keys.length - 1;
+        int idx = SessionTable.__slot(key, mask);
+        for (int i = 0; i < keys.length; ++i) {
+            final long slotKey = keys[idx];
+            if (slotKey == key) {
+                return sessions[idx];
+            } else if (slotKey == SessionTable.EMPTY_KEY) {
+                return null;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Double the number of slots. Must be called with the write lock held.
+     *
+     * @since 1.4.0
+     */
+    private void __grow() {
+        final long[] oldKeys = this.keys;
+        final Session[] oldSessions = this.sessions;
+        final int mask = oldKeys.length * 2 - 1;
+        final long[] newKeys = new long[oldKeys.length * 2];
+        final Session[] newSessions = new Session[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != SessionTable.EMPTY_KEY) {
+                int idx = SessionTable.__slot(oldKeys[i], mask);
+                while (newKeys[idx] != SessionTable.EMPTY_KEY) {
+                    idx = (idx + 1) & mask;
+                }
+                newKeys[idx] = oldKeys[i];
+                newSessions[idx] = oldSessions[i];
+            }
+        }
+        this.keys = newKeys;
+        this.sessions = newSessions;
+    }
+
+    /**
+     * Copy all sessions in a new list.
+     *
+     * @return The sessions
+     * @since 1.4.0
+     */
+    private List<Session> __snapshot() {
+        final long stamp = this.lock.readLock();
+        try {
+            final List<Session> snapshot = new ArrayList<>(this.size);
+            for (final Session session : this.sessions) {
+                if (session != null) {
+                    snapshot.add(session);
+                }
+            }
+            return snapshot;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Add a session to the table. An existing session with the same key
+     * is replaced.
+     *
+     * @param key     The key, must not be {@code 0}
+     * @param session The session
+     * @since 1.4.0
+     */
+    public void put(final long key, final Session session) {
+        if (key == SessionTable.EMPTY_KEY) {
+            throw new IllegalArgumentException("Key 0 is reserved");
+        }
+        final long stamp = this.lock.writeLock();
+        try {
+            if ((this.size + 1) * 2 > this.keys.length) {
+                this.__grow();
+            }
+            final int mask = this.keys.length - 1;
+            int idx = SessionTable.__slot(key, mask);
+            while (this.keys[idx] != SessionTable.EMPTY_KEY && this.keys[idx] != key) {
+                idx = (idx + 1) & mask;
+            }
+            if (this.keys[idx] == SessionTable.EMPTY_KEY) {
+                this.size += 1;
+            }
+            this.keys[idx] = key;
+            this.sessions[idx] = session;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Get the session with the given key.
+     *
+     * @param key The key
+     * @return The session, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    public Session get(final long key) {
+        if (key == SessionTable.EMPTY_KEY) {
+            return null;
+        }
+        long stamp = this.lock.tryOptimisticRead();
+        final long[] slotKeys = this.keys;
+        final Session[] slotSessions = this.sessions;
+        Session session = null;
+        if (slotKeys.length == slotSessions.length) {
+            session = SessionTable.__find(slotKeys, slotSessions, key);
+        } else {
+            stamp = 0;
+        }
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                session = SessionTable.__find(this.keys, this.sessions, key);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Remove the session with the given key.
+     *
+     * @param key The key
+     * @return The removed session, otherwise, {@code null}
+     * @since 1.4.0
+     */
+    public Session remove(final long key) {
+        if (key == SessionTable.EMPTY_KEY) {
+            return null;
+        }
+        final long stamp = this.lock.writeLock();
+        try {
+            final int mask = this.keys.length - 1;
+            int idx = SessionTable.__slot(key, mask);
+            while (this.keys[idx] != key) {
+                if (this.keys[idx] == SessionTable.EMPTY_KEY) {
+                    return null;
+                }
+                idx = (idx + 1) & mask;
+            }
+            final Session removed = this.sessions[idx];
+            int hole = idx;
+            int next = (hole + 1) & mask;
+            while (this.keys[next] != SessionTable.EMPTY_KEY) {
+                final int home = SessionTable.__slot(this.keys[next], mask);
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    this.keys[hole] = this.keys[next];
+                    this.sessions[hole] = this.sessions[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            this.keys[hole] = SessionTable.EMPTY_KEY;
+            this.sessions[hole] = null;
+            this.size -= 1;
+            return removed;
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Get the number of sessions in the table.
+     *
+     * @return The number of sessions
+     * @since 1.4.0
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Get a read only view of the sessions. Iterators work on a snapshot
+     * taken when they are created.
+     *
+     * @return The sessions
+     * @since 1.4.0
+     */
+    public Collection<Session> values() {
+        return this.values;
+    }
+}
@@ -0,0 +1,111 @@
+package core.server.session;
+
+/**
+ * Token bucket limiting the rate of the commands executed by a session.
+ * The bucket is refilled continuously up to its capacity. Costs are
+ * charged once the cost of a command is known and can leave the bucket
+ * in debt; no command is executed until the debt is paid back. This class
+ * is not thread safe, it must only be used by the worker owning the
+ * session.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class TokenBucket {
+
+    /**
+     * The maximal number of tokens.
+     *
+     * @since 1.4.0
+     */
+    private final double capacity;
+
+    /**
+     * The number of tokens added per second. The bucket is disabled if
+     * this value is not positive.
+     *
+     * @since 1.4.0
+     */
+    private final double refillRate;
+
+    /**
+     * The current number of tokens, negative when in debt.
+     *
+     * @since 1.4.0
+     */
+    private double tokens;
+
+    /**
+     * Time in nanoseconds of the last refill.
+     *
+     * @since 1.4.0
+     */
+    private long lastRefill;
+
+    /**
+     * Build a new full bucket.
+     *
+     * @param capacity   The maximal number of tokens
+     * @param refillRate The number of tokens added per second, not positive to disable the bucket
+     * @since 1.4.0
+     */
+    public TokenBucket(final double capacity, final double refillRate) {
+        this.capacity = capacity;
+        this.refillRate = refillRate;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Add the tokens earned since the last refill.
+     *
+     * @since 1.4.0
+     */
+    private void __refill() {
+        final long now = System.nanoTime();
+        this.tokens = Math.min(this.capacity, this.tokens + (now - this.lastRefill) * this.refillRate / 1000000000.0);
+        this.lastRefill = now;
+    }
+
+    /**
+     * Check if a command can be executed.
+     *
+     * @return {@code true} if some tokens are available, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    public boolean hasTokens() {
+        if (this.refillRate <= 0) {
+            return true;
+        }
+        this.__refill();
+        return this.tokens > 0;
+    }
+
+    /**
+     * Charge the cost of a command.
+     *
+     * @param cost The number of tokens to remove
+     * @since 1.4.0
+     */
+    public void consume(final double cost) {
+        if (this.refillRate > 0) {
+            this.__refill();
+            this.tokens -= cost;
+        }
+    }
+
+    /**
+     * Get the time to wait until some tokens are available.
+     *
+     * @return The delay in milliseconds
+     * @since 1.4.0
+     */
+    public long getWaitTime() {
+        if (this.refillRate <= 0) {
+            return 0;
+        }
+        this.__refill();
+        return this.tokens > 0 ? 0 : (long) Math.ceil((-this.tokens * 1000.0) / this.refillRate) + 1;
+    }
+}
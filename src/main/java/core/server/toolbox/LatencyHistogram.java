@@ -0,0 +1,184 @@
+package core.server.toolbox;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram using a fixed amount of memory. Values are
+ * recorded in nanoseconds into log-linear buckets: each power of two is
+ * split in {@code SUB_BUCKET_COUNT} buckets, so the reported percentiles
+ * are at most 1/16 (6.25%) above the real value. Values above 2^40 ns
+ * (about 18 minutes) are recorded in the last bucket.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public final class LatencyHistogram {
+
+    /**
+     * Number of bits used to split each power of two.
+     *
+     * @since 1.4.0
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * Number of buckets per power of two.
+     *
+     * @since 1.4.0
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << LatencyHistogram.SUB_BUCKET_BITS;
+
+    /**
+     * Highest power of two tracked with full precision.
+     *
+     * @since 1.4.0
+     */
+    private static final int MAX_EXPONENT = 40;
+
+    /**
+     * Number of buckets.
+     *
+     * @since 1.4.0
+     */
+    private static final int BUCKET_COUNT = (LatencyHistogram.MAX_EXPONENT - LatencyHistogram.SUB_BUCKET_BITS + 2) * LatencyHistogram.SUB_BUCKET_COUNT;
+
+    /**
+     * Number of recorded values per bucket.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicLongArray buckets;
+
+    /**
+     * Highest recorded value.
+     *
+     * @since 1.4.0
+     */
+    private final AtomicLong max;
+
+    /**
+     * Build a new empty histogram.
+     *
+     * @since 1.4.0
+     */
+    public LatencyHistogram() {
+        this.buckets = new AtomicLongArray(LatencyHistogram.BUCKET_COUNT);
+        this.max = new AtomicLong(0);
+    }
+
+    /**
+     * Get the bucket of the given value.
+     *
+     * @param value The value in nanoseconds
+     * @return The bucket index
+     * @since 1.4.0
+     */
+    private static int __indexOf(final long value) {
+        if (value < LatencyHistogram.SUB_BUCKET_COUNT) {
+            return (int) Math.max(0, value);
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > LatencyHistogram.MAX_EXPONENT) {
+            return LatencyHistogram.BUCKET_COUNT - 1;
+        }
+        final int shift = exponent - LatencyHistogram.SUB_BUCKET_BITS;
+        return (shift + 1) * LatencyHistogram.SUB_BUCKET_COUNT + (int) ((value >>> shift) & (LatencyHistogram.SUB_BUCKET_COUNT - 1));
+    }
+
+    /**
+     * Get the highest value recorded in the given bucket.
+     *
+     * @param index The bucket index
+     * @return The value in nanoseconds
+     * @since 1.4.0
+     */
+    private static long __highestValueOf(final int index) {
+        if (index < LatencyHistogram.SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = index / LatencyHistogram.SUB_BUCKET_COUNT - 1;
+        final long subBucket = LatencyHistogram.SUB_BUCKET_COUNT + (index % LatencyHistogram.SUB_BUCKET_COUNT);
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * Record a value.
+     *
+     * @param value The value in nanoseconds
+     * @since 1.4.0
+     */
+    public void record(final long value) {
+        this.buckets.incrementAndGet(LatencyHistogram.__indexOf(value));
+        long current = this.max.get();
+        while (value > current && !this.max.compareAndSet(current, value)) {
+            current = this.max.get();
+        }
+    }
+
+    /**
+     * Get the number of recorded values.
+     *
+     * @return The number of recorded values
+     * @since 1.4.0
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; ++i) {
+            count += this.buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Get the value under which the given percentage of the recorded
+     * values fall.
+     *
+     * @param percentile The percentile, between 0 and 100
+     * @return The value in nanoseconds, or 0 if no value has been recorded
+     * @since 1.4.0
+     */
+    public long getValueAtPercentile(final double percentile) {
+        final long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; ++i) {
+            counts[i] = this.buckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(total * Math.min(100.0, percentile) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; ++i) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.__highestValueOf(i), this.max.get());
+            }
+        }
+        return this.max.get();
+    }
+
+    /**
+     * Drop all recorded values. Values recorded concurrently may be kept.
+     *
+     * @since 1.4.0
+     */
+    public void reset() {
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; ++i) {
+            this.buckets.set(i, 0);
+        }
+        this.max.set(0);
+    }
+
+    /**
+     * Get the highest recorded value.
+     *
+     * @return The value in nanoseconds
+     * @since 1.4.0
+     */
+    public long getMax() {
+        return this.max.get();
+    }
+}
@@ -1,11 +1,15 @@
 package core.server.toolbox;
 
 import core.server.session.Session;
+import core.server.session.SessionRegistry;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Helper to parse string containing single or multiple
@@ -13,7 +17,7 @@ import java.util.List;
  * as login.
  *
  * @author Thibault Meyer
- * @version 1.1.0
+ * @version 1.4.0
  * @since 1.0.0
  */
 public final class ListLoginParser {
@@ -33,8 +37,8 @@ public final class ListLoginParser {
             if (lstLoginDest.get(i).startsWith(":")) {
                 try {
                     final long fd = Long.valueOf(lstLoginDest.get(i).substring(1));
-                    final Session sess = connectedSessions.stream().filter(s -> s.network.fd == fd).findFirst().orElse(null);
-                    if (sess != null) {
+                    final Session sess = SessionRegistry.getInstance().getSession(fd);
+                    if (sess != null && sess.user.login != null) {
                         if (!lstLoginDest.contains(sess.user.login)) {
                             lstLoginDest.remove(i);
                             lstLoginDest.add(i, sess.user.login);
@@ -53,6 +57,25 @@ public final class ListLoginParser {
         return lstLoginDest;
     }
 
+    /**
+     * Count the entries of the login (or login list) string, without
+     * resolving them.
+     *
+     * @param data The containing the login or the list of login
+     * @return The number of entries
+     * @since 1.4.0
+     */
+    public static int countEntries(final String data) {
+        int count = 1;
+        for (int i = 0; i < data.length(); ++i) {
+            final char c = data.charAt(i);
+            if (c == ',' || c == ';') {
+                count += 1;
+            }
+        }
+        return count;
+    }
+
     /**
      * Parse the login (or login list) string to a build a list of Session. Duplicated entries are removed.
      *
@@ -62,24 +85,18 @@ public final class ListLoginParser {
      * @since 1.1.0
      */
     public static List<Session> parseToSession(final String data, final Collection<Session> connectedSessions) {
-        final List<Session> lstSessionDest = new LinkedList<>();
-        for (final String login : Arrays.asList(data.replaceAll("[\\{\\}]", "").split("[,;]"))) {
+        final Set<Session> lstSessionDest = new LinkedHashSet<>();
+        for (final String login : data.replaceAll("[\\{\\}]", "").split("[,;]")) {
             if (login.startsWith(":")) {
                 final long fd = Long.valueOf(login.substring(1));
-                final Session tmpSess = connectedSessions.stream().filter(s -> s.network.fd == fd && s.user.login != null).findFirst().orElse(null);
-                if (tmpSess != null) {
-                    if (!lstSessionDest.contains(tmpSess)) {
-                        lstSessionDest.add(tmpSess);
-                    }
+                final Session tmpSess = SessionRegistry.getInstance().getSession(fd);
+                if (tmpSess != null && tmpSess.user.login != null) {
+                    lstSessionDest.add(tmpSess);
                 }
             } else {
-                connectedSessions.stream().filter(s -> s.user.login != null && s.user.login.compareTo(login) == 0).forEach(s -> {
-                    if (!lstSessionDest.contains(s)) {
-                        lstSessionDest.add(s);
-                    }
-                });
+                lstSessionDest.addAll(SessionRegistry.getInstance().getSessions(login));
             }
         }
-        return lstSessionDest;
+        return new ArrayList<>(lstSessionDest);
     }
 }
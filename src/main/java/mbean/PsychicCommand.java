@@ -0,0 +1,57 @@
+package mbean;
+
+import core.server.command.CommandRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PsychicCommand.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public class PsychicCommand implements PsychicCommandMBean {
+
+    /**
+     * Logger.
+     */
+    private static final Logger LOG = LoggerFactory.getLogger(PsychicCommand.class.getName());
+
+    /**
+     * Get the number of enabled commands.
+     *
+     * @return The number of enabled commands
+     * @since 1.4.0
+     */
+    @Override
+    public int getEnabledCommandsCount() {
+        LOG.trace("getEnabledCommandsCount");
+        return CommandRegistry.getInstance().size();
+    }
+
+    /**
+     * Get the OpCodes of the enabled commands.
+     *
+     * @return The sorted OpCodes
+     * @since 1.4.0
+     */
+    @Override
+    public String[] getEnabledCommands() {
+        LOG.trace("getEnabledCommands");
+        return CommandRegistry.getInstance().getOpcodes().toArray(new String[0]);
+    }
+
+    /**
+     * Reload the commands file and replace the enabled commands. Connected
+     * sessions are kept.
+     *
+     * @return {@code true} if the commands have been replaced, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    @Override
+    public boolean reloadCommands() {
+        LOG.info("Reloading commands requested from JMX");
+        return CommandRegistry.getInstance().reload();
+    }
+}
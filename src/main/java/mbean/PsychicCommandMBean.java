@@ -0,0 +1,36 @@
+package mbean;
+
+/**
+ * PsychicCommandMBean.
+ *
+ * @author Thibault Meyer
+ * @version 1.4.0
+ * @since 1.4.0
+ */
+public interface PsychicCommandMBean {
+
+    /**
+     * Get the number of enabled commands.
+     *
+     * @return The number of enabled commands
+     * @since 1.4.0
+     */
+    int getEnabledCommandsCount();
+
+    /**
+     * Get the OpCodes of the enabled commands.
+     *
+     * @return The sorted OpCodes
+     * @since 1.4.0
+     */
+    String[] getEnabledCommands();
+
+    /**
+     * Reload the commands file and replace the enabled commands. Connected
+     * sessions are kept.
+     *
+     * @return {@code true} if the commands have been replaced, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    boolean reloadCommands();
+}
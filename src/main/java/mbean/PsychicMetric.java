@@ -1,14 +1,33 @@
 package mbean;
 
+import core.network.DisconnectReason;
 import core.server.NSServer;
+import core.server.command.CommandStatistics;
+import core.server.session.FanoutScheduler;
+import core.server.session.OutputBudget;
+import core.server.session.Session;
+import core.server.session.SessionRegistry;
+import core.server.toolbox.LatencyHistogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * PsychicMetric.
  *
  * @author Thibault Meyer
- * @version 1.3.0
+ * @version 1.4.0
  * @since 1.3.0
  */
 public class PsychicMetric implements PsychicMetricMBean {
@@ -18,6 +37,22 @@ public class PsychicMetric implements PsychicMetricMBean {
      */
     private static final Logger LOG = LoggerFactory.getLogger(PsychicMetric.class.getName());
 
+    /**
+     * Names of the items of a command latency.
+     */
+    private static final String[] LATENCY_ITEM_NAMES = {"opcode", "count", "p50", "p99", "p999", "max"};
+
+    /**
+     * Descriptions of the items of a command latency.
+     */
+    private static final String[] LATENCY_ITEM_DESCRIPTIONS = {
+            "Command OpCode",
+            "Number of executions",
+            "50th percentile in microseconds",
+            "99th percentile in microseconds",
+            "99.9th percentile in microseconds",
+            "Maximal latency in microseconds"};
+
     /**
      * Handle to the current Netsoul server.
      */
@@ -44,4 +79,279 @@ public class PsychicMetric implements PsychicMetricMBean {
         LOG.trace("getConnectedSessionsCount");
         return nsServer.getConnectedSessionsCount();
     }
+
+    /**
+     * Get the number of socket reads served with a recycled buffer.
+     *
+     * @return The number of read buffer pool hits
+     * @since 1.4.0
+     */
+    @Override
+    public long getReadBufferPoolHitCount() {
+        LOG.trace("getReadBufferPoolHitCount");
+        return nsServer.getReadBufferPool().getHitCount();
+    }
+
+    /**
+     * Get the number of socket reads that required a buffer allocation.
+     *
+     * @return The number of read buffer pool misses
+     * @since 1.4.0
+     */
+    @Override
+    public long getReadBufferPoolMissCount() {
+        LOG.trace("getReadBufferPoolMissCount");
+        return nsServer.getReadBufferPool().getMissCount();
+    }
+
+    /**
+     * Get the direct memory allocated by the read buffer pool.
+     *
+     * @return The allocated memory in bytes
+     * @since 1.4.0
+     */
+    @Override
+    public long getReadBufferPoolAllocatedBytes() {
+        LOG.trace("getReadBufferPoolAllocatedBytes");
+        return nsServer.getReadBufferPool().getAllocatedBytes();
+    }
+
+    /**
+     * Get the number of sessions waiting in the ready sessions queues.
+     *
+     * @return The ready sessions queue depth
+     * @since 1.4.0
+     */
+    @Override
+    public int getReadySessionQueueDepth() {
+        LOG.trace("getReadySessionQueueDepth");
+        return nsServer.getReadySessionCount();
+    }
+
+    /**
+     * Get the number of distinct logged in users.
+     *
+     * @return The number of distinct logins
+     * @since 1.4.0
+     */
+    @Override
+    public int getLoggedUsersCount() {
+        LOG.trace("getLoggedUsersCount");
+        return SessionRegistry.getInstance().getLoginCount();
+    }
+
+    /**
+     * Get the number of notification fan-outs waiting to be delivered.
+     *
+     * @return The number of queued fan-outs
+     * @since 1.4.0
+     */
+    @Override
+    public int getPendingFanoutCount() {
+        LOG.trace("getPendingFanoutCount");
+        return FanoutScheduler.getInstance().getPendingCount();
+    }
+
+    /**
+     * Get the number of delivered notification fan-outs.
+     *
+     * @return The number of delivered fan-outs
+     * @since 1.4.0
+     */
+    @Override
+    public long getCompletedFanoutCount() {
+        LOG.trace("getCompletedFanoutCount");
+        return FanoutScheduler.getInstance().getCompletedCount();
+    }
+
+    /**
+     * Get the average time between the delivery of a notification to the
+     * first and to the last follower.
+     *
+     * @return The average latency in milliseconds
+     * @since 1.4.0
+     */
+    @Override
+    public double getFanoutAverageLatency() {
+        LOG.trace("getFanoutAverageLatency");
+        return FanoutScheduler.getInstance().getAverageLatency();
+    }
+
+    /**
+     * Get the highest time between the delivery of a notification to the
+     * first and to the last follower.
+     *
+     * @return The highest latency in milliseconds
+     * @since 1.4.0
+     */
+    @Override
+    public double getFanoutMaxLatency() {
+        LOG.trace("getFanoutMaxLatency");
+        return FanoutScheduler.getInstance().getMaxLatency();
+    }
+
+    /**
+     * Get the number of closed sessions, per disconnection reason.
+     *
+     * @return The number of closed sessions, per reason
+     * @since 1.4.0
+     */
+    @Override
+    public Map<String, Long> getDisconnectCounts() {
+        LOG.trace("getDisconnectCounts");
+        final Map<String, Long> disconnectCounts = new LinkedHashMap<>();
+        for (final DisconnectReason reason : DisconnectReason.values()) {
+            disconnectCounts.put(reason.name(), nsServer.getDisconnectCount(reason));
+        }
+        return disconnectCounts;
+    }
+
+    /**
+     * Get the number of sessions closed because they did not read their
+     * data fast enough.
+     *
+     * @return The number of slow consumers disconnected
+     * @since 1.4.0
+     */
+    @Override
+    public long getSlowConsumerCount() {
+        LOG.trace("getSlowConsumerCount");
+        return nsServer.getDisconnectCount(DisconnectReason.SLOW_CONSUMER);
+    }
+
+    /**
+     * Get the number of messages dropped because the receiver was too slow.
+     *
+     * @return The number of dropped messages
+     * @since 1.4.0
+     */
+    @Override
+    public long getDroppedMessageCount() {
+        LOG.trace("getDroppedMessageCount");
+        return Session.getDroppedMessageCount();
+    }
+
+    /**
+     * Get the number of notifications replaced by a newer one because the
+     * receiver was too slow.
+     *
+     * @return The number of coalesced notifications
+     * @since 1.4.0
+     */
+    @Override
+    public long getCoalescedNotificationCount() {
+        LOG.trace("getCoalescedNotificationCount");
+        return Session.getCoalescedNotificationCount();
+    }
+
+    /**
+     * Get the number of bytes queued in the output buffers of all sessions.
+     *
+     * @return The number of queued bytes
+     * @since 1.4.0
+     */
+    @Override
+    public long getQueuedOutputBytes() {
+        LOG.trace("getQueuedOutputBytes");
+        return OutputBudget.getInstance().getQueuedBytes();
+    }
+
+    /**
+     * Check if the server is shedding because the output budget has been
+     * exceeded.
+     *
+     * @return {@code true} if shedding, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    @Override
+    public boolean isShedding() {
+        LOG.trace("isShedding");
+        return OutputBudget.getInstance().isShedding();
+    }
+
+    /**
+     * Get the number of expensive commands rejected while shedding.
+     *
+     * @return The number of rejected commands
+     * @since 1.4.0
+     */
+    @Override
+    public long getRejectedCommandCount() {
+        LOG.trace("getRejectedCommandCount");
+        return OutputBudget.getInstance().getRejectedCount();
+    }
+
+    /**
+     * Get the number of fan-outs deferred while shedding.
+     *
+     * @return The number of deferred fan-outs
+     * @since 1.4.0
+     */
+    @Override
+    public long getDeferredFanoutCount() {
+        LOG.trace("getDeferredFanoutCount");
+        return OutputBudget.getInstance().getDeferredCount();
+    }
+
+    /**
+     * Get the number of times a session has been paused by its command
+     * rate limit.
+     *
+     * @return The number of rate limited sessions
+     * @since 1.4.0
+     */
+    @Override
+    public long getRateLimitedCount() {
+        LOG.trace("getRateLimitedCount");
+        return nsServer.getRateLimitedCount();
+    }
+
+    /**
+     * Get the execution latency of each command: number of executions,
+     * 50th, 99th and 99.9th percentiles and maximal latency. Latencies
+     * are in microseconds.
+     *
+     * @return The latency of each command
+     * @since 1.4.0
+     */
+    @Override
+    public CompositeData[] getCommandLatencies() {
+        LOG.trace("getCommandLatencies");
+        final List<CompositeData> latencies = new ArrayList<>();
+        try {
+            final CompositeType type = new CompositeType("CommandLatency",
+                    "Execution latency of a command",
+                    PsychicMetric.LATENCY_ITEM_NAMES,
+                    PsychicMetric.LATENCY_ITEM_DESCRIPTIONS,
+                    new OpenType<?>[]{SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG});
+            final Map<String, LatencyHistogram> histograms = new TreeMap<>(CommandStatistics.getInstance().getHistograms());
+            for (final Map.Entry<String, LatencyHistogram> e : histograms.entrySet()) {
+                final LatencyHistogram histogram = e.getValue();
+                if (histogram.getCount() == 0) {
+                    continue;
+                }
+                latencies.add(new CompositeDataSupport(type, PsychicMetric.LATENCY_ITEM_NAMES, new Object[]{
+                        e.getKey(),
+                        histogram.getCount(),
+                        histogram.getValueAtPercentile(50) / 1000,
+                        histogram.getValueAtPercentile(99) / 1000,
+                        histogram.getValueAtPercentile(99.9) / 1000,
+                        histogram.getMax() / 1000}));
+            }
+        } catch (OpenDataException e) {
+            LOG.error("Can't build the command latencies", e);
+        }
+        return latencies.toArray(new CompositeData[0]);
+    }
+
+    /**
+     * Drop all recorded command latencies.
+     *
+     * @since 1.4.0
+     */
+    @Override
+    public void resetCommandLatencies() {
+        LOG.info("Command latencies reset requested from JMX");
+        CommandStatistics.getInstance().reset();
+    }
 }
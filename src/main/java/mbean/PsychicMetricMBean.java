@@ -1,10 +1,13 @@
 package mbean;
 
+import javax.management.openmbean.CompositeData;
+import java.util.Map;
+
 /**
  * PsychicMetricMBean.
  *
  * @author Thibault Meyer
- * @version 1.3.0
+ * @version 1.4.0
  * @since 1.3.0
  */
 public interface PsychicMetricMBean {
@@ -16,4 +19,171 @@ public interface PsychicMetricMBean {
      * @since 1.3.0
      */
     int getConnectedSessionsCount();
+
+    /**
+     * Get the number of socket reads served with a recycled buffer.
+     *
+     * @return The number of read buffer pool hits
+     * @since 1.4.0
+     */
+    long getReadBufferPoolHitCount();
+
+    /**
+     * Get the number of socket reads that required a buffer allocation.
+     *
+     * @return The number of read buffer pool misses
+     * @since 1.4.0
+     */
+    long getReadBufferPoolMissCount();
+
+    /**
+     * Get the direct memory allocated by the read buffer pool.
+     *
+     * @return The allocated memory in bytes
+     * @since 1.4.0
+     */
+    long getReadBufferPoolAllocatedBytes();
+
+    /**
+     * Get the number of sessions waiting in the ready sessions queues.
+     *
+     * @return The ready sessions queue depth
+     * @since 1.4.0
+     */
+    int getReadySessionQueueDepth();
+
+    /**
+     * Get the number of distinct logged in users.
+     *
+     * @return The number of distinct logins
+     * @since 1.4.0
+     */
+    int getLoggedUsersCount();
+
+    /**
+     * Get the number of notification fan-outs waiting to be delivered.
+     *
+     * @return The number of queued fan-outs
+     * @since 1.4.0
+     */
+    int getPendingFanoutCount();
+
+    /**
+     * Get the number of delivered notification fan-outs.
+     *
+     * @return The number of delivered fan-outs
+     * @since 1.4.0
+     */
+    long getCompletedFanoutCount();
+
+    /**
+     * Get the average time between the delivery of a notification to the
+     * first and to the last follower.
+     *
+     * @return The average latency in milliseconds
+     * @since 1.4.0
+     */
+    double getFanoutAverageLatency();
+
+    /**
+     * Get the highest time between the delivery of a notification to the
+     * first and to the last follower.
+     *
+     * @return The highest latency in milliseconds
+     * @since 1.4.0
+     */
+    double getFanoutMaxLatency();
+
+    /**
+     * Get the number of closed sessions, per disconnection reason.
+     *
+     * @return The number of closed sessions, per reason
+     * @since 1.4.0
+     */
+    Map<String, Long> getDisconnectCounts();
+
+    /**
+     * Get the number of sessions closed because they did not read their
+     * data fast enough.
+     *
+     * @return The number of slow consumers disconnected
+     * @since 1.4.0
+     */
+    long getSlowConsumerCount();
+
+    /**
+     * Get the number of messages dropped because the receiver was too slow.
+     *
+     * @return The number of dropped messages
+     * @since 1.4.0
+     */
+    long getDroppedMessageCount();
+
+    /**
+     * Get the number of notifications replaced by a newer one because the
+     * receiver was too slow.
+     *
+     * @return The number of coalesced notifications
+     * @since 1.4.0
+     */
+    long getCoalescedNotificationCount();
+
+    /**
+     * Get the number of bytes queued in the output buffers of all sessions.
+     *
+     * @return The number of queued bytes
+     * @since 1.4.0
+     */
+    long getQueuedOutputBytes();
+
+    /**
+     * Check if the server is shedding because the output budget has been
+     * exceeded.
+     *
+     * @return {@code true} if shedding, otherwise, {@code false}
+     * @since 1.4.0
+     */
+    boolean isShedding();
+
+    /**
+     * Get the number of expensive commands rejected while shedding.
+     *
+     * @return The number of rejected commands
+     * @since 1.4.0
+     */
+    long getRejectedCommandCount();
+
+    /**
+     * Get the number of fan-outs deferred while shedding.
+     *
+     * @return The number of deferred fan-outs
+     * @since 1.4.0
+     */
+    long getDeferredFanoutCount();
+
+    /**
+     * Get the number of times a session has been paused by its command
+     * rate limit.
+     *
+     * @return The number of rate limited sessions
+     * @since 1.4.0
+     */
+    long getRateLimitedCount();
+
+    /**
+     * Get the execution latency of each command: number of executions,
+     * 50th, 99th and 99.9th percentiles and maximal latency. Latencies
+     * are in microseconds.
+     *
+     * @return The latency of each command
+     * @since 1.4.0
+     */
+    CompositeData[] getCommandLatencies();
+
+    /**
+     * Drop all recorded command latencies.
+     *
+     * @since 1.4.0
+     */
+    void resetCommandLatencies();
 }